@@ -0,0 +1,332 @@
+package nes_emulator.macro;
+
+import nes_emulator.nes.components.cpu.CPU;
+import nes_emulator.nes.components.cpu.CPURegisterState;
+import nes_emulator.nes.components.cpu.DecodeCache;
+import nes_emulator.nes.components.cpu.PcProfiler;
+import nes_emulator.nes.components.cpu.Recompiler;
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// end to end speed of the interpreter on the MacroWorkload programs
+// every workload runs for a warmup and then a fixed number of emulated cycles, and the results are printed
+// as a table and written as json so they can be compared between releases
+// usage: MacroBenchmark [--cycles=<n>] [--warmup=<n>] [--out=<file>]
+//                       [--profile=<dir>] [--profile-interval=<n>] [--recompile] [workload...]
+// --profile runs every workload once more under the PcProfiler and writes <dir>/<workload>.folded,
+// along with the speed of the same run without the profiler to show what profiling costs
+// --recompile runs every workload once more with the Recompiler and compares its speed and final state to the interpreter
+public class MacroBenchmark {
+    public static final double NES_CLOCK_MHZ = 1.789773;
+    public static final long DEFAULT_CYCLES = 200_000_000L;
+    public static final long DEFAULT_WARMUP_CYCLES = 50_000_000L;
+    public static final String DEFAULT_OUT = "build/reports/macro-benchmark.json";
+    public static final int DEFAULT_PROFILE_INTERVAL = 1000;
+
+    private static class Result {
+        MacroWorkload workload;
+        long instructions;
+        long cycles;
+        long nanos;
+        long allocatedBytes; // -1 if the jvm can not measure it
+        long gcCount;
+        long gcMillis;
+        long decodeHits; // decode cache hits and misses in the timed run
+        long decodeMisses;
+        long decodeInvalidations;
+
+        double decodeHitRate() {
+            long lookups = decodeHits + decodeMisses;
+            return lookups == 0 ? 0 : (double) decodeHits / lookups;
+        }
+
+        double mips() {
+            return instructions * 1e3 / nanos;
+        }
+
+        double mhz() {
+            return cycles * 1e3 / nanos;
+        }
+
+        double bytesPerInstruction() {
+            return allocatedBytes < 0 ? -1 : (double) allocatedBytes / instructions;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long cycles = DEFAULT_CYCLES;
+        long warmupCycles = DEFAULT_WARMUP_CYCLES;
+        String out = DEFAULT_OUT;
+        String profileDir = null;
+        int profileInterval = DEFAULT_PROFILE_INTERVAL;
+        boolean recompile = false;
+        List<MacroWorkload> workloads = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--cycles=")) {
+                cycles = Long.parseLong(arg.substring("--cycles=".length()));
+            } else if (arg.startsWith("--warmup=")) {
+                warmupCycles = Long.parseLong(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--out=")) {
+                out = arg.substring("--out=".length());
+            } else if (arg.startsWith("--profile=")) {
+                profileDir = arg.substring("--profile=".length());
+            } else if (arg.equals("--recompile")) {
+                recompile = true;
+            } else if (arg.startsWith("--profile-interval=")) {
+                profileInterval = Integer.parseInt(arg.substring("--profile-interval=".length()));
+            } else {
+                workloads.add(MacroWorkload.valueOf(arg.toUpperCase(Locale.ROOT)));
+            }
+        }
+        if (workloads.isEmpty()) {
+            workloads.addAll(List.of(MacroWorkload.values()));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (MacroWorkload workload : workloads) {
+            results.add(run(workload, warmupCycles, cycles));
+        }
+        printTable(results, System.out);
+        writeJson(results, Paths.get(out));
+        System.out.println("Results written to " + out);
+
+        if (profileDir != null) {
+            Files.createDirectories(Paths.get(profileDir));
+            System.out.printf(Locale.ROOT, "%-20s %10s %10s %10s %10s%n",
+                    "workload", "MHz", "profiled", "overhead", "samples");
+            for (MacroWorkload workload : workloads) {
+                profile(workload, warmupCycles, cycles, profileInterval, Paths.get(profileDir));
+            }
+            System.out.println("Folded stacks written to " + profileDir);
+        }
+
+        if (recompile) {
+            System.out.printf(Locale.ROOT, "%-20s %10s %10s %8s %8s %12s %10s%n",
+                    "workload", "MHz", "recompiled", "speedup", "blocks", "block runs", "side exits");
+            for (MacroWorkload workload : workloads) {
+                recompile(workload, warmupCycles, cycles);
+            }
+        }
+    }
+
+    static Result run(MacroWorkload workload, long warmupCycles, long cycles) {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        workload.load(cpu.getCpuMemory());
+        cpu.getRegisters().PC = MacroWorkload.ORIGIN;
+
+        execute(cpu, workload, warmupCycles);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long cyclesBefore = cpu.getCycles();
+        DecodeCache decodeCache = cpu.getDecodeCache();
+        decodeCache.resetStatistics();
+        long start = System.nanoTime();
+
+        long instructions = execute(cpu, workload, cycles);
+
+        Result result = new Result();
+        result.nanos = System.nanoTime() - start;
+        result.workload = workload;
+        result.instructions = instructions;
+        result.cycles = cpu.getCycles() - cyclesBefore;
+        long allocatedAfter = allocatedBytes(threads);
+        result.allocatedBytes = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+        result.gcCount = gcCount() - gcCountBefore;
+        result.gcMillis = gcMillis() - gcMillisBefore;
+        result.decodeHits = decodeCache.getHits();
+        result.decodeMisses = decodeCache.getMisses();
+        result.decodeInvalidations = decodeCache.getInvalidations();
+        return result;
+    }
+
+    // runs the workload through runCycles without and then with a profiler, and writes the folded stacks
+    static void profile(MacroWorkload workload, long warmupCycles, long cycles, int interval, Path dir)
+            throws IOException {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        workload.load(cpu.getCpuMemory());
+        cpu.getRegisters().PC = MacroWorkload.ORIGIN;
+        PcProfiler profiler = new PcProfiler(interval);
+
+        // both loops are warmed up so neither run pays for the jit
+        cpu.runCycles(warmupCycles);
+        cpu.setProfiler(profiler);
+        cpu.runCycles(warmupCycles);
+        cpu.setProfiler(null);
+        profiler.reset();
+
+        long start = System.nanoTime();
+        long plainCycles = cpu.getCycles();
+        cpu.runCycles(cycles);
+        plainCycles = cpu.getCycles() - plainCycles;
+        long plainNanos = System.nanoTime() - start;
+
+        cpu.setProfiler(profiler);
+        start = System.nanoTime();
+        long profiledCycles = cpu.getCycles();
+        cpu.runCycles(cycles);
+        profiledCycles = cpu.getCycles() - profiledCycles;
+        long profiledNanos = System.nanoTime() - start;
+        cpu.setProfiler(null);
+        if (cpu.isJammed()) {
+            throw new IllegalStateException(workload + " jammed at " + Integer.toHexString(cpu.getRegisters().PC));
+        }
+
+        double plainMhz = plainCycles * 1e3 / plainNanos;
+        double profiledMhz = profiledCycles * 1e3 / profiledNanos;
+        System.out.printf(Locale.ROOT, "%-20s %10.2f %10.2f %9.1f%% %10d%n",
+                workload, plainMhz, profiledMhz, (plainMhz / profiledMhz - 1) * 100, profiler.getNumSamples());
+        Path file = dir.resolve(workload.name().toLowerCase(Locale.ROOT) + ".folded");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            profiler.writeFolded(writer);
+        }
+    }
+
+    // runs the workload through runCycles with and without a recompiler, both have to end in the same state
+    static void recompile(MacroWorkload workload, long warmupCycles, long cycles) {
+        CPU interpreted = newCpu(workload);
+        CPU recompiled = newCpu(workload);
+        Recompiler recompiler = new Recompiler();
+        recompiled.setRecompiler(recompiler);
+
+        interpreted.runCycles(warmupCycles);
+        recompiled.runCycles(warmupCycles);
+        long start = System.nanoTime();
+        long interpretedCycles = interpreted.getCycles();
+        interpreted.runCycles(cycles);
+        interpretedCycles = interpreted.getCycles() - interpretedCycles;
+        long interpretedNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        long recompiledCycles = recompiled.getCycles();
+        recompiled.runCycles(cycles);
+        recompiledCycles = recompiled.getCycles() - recompiledCycles;
+        long recompiledNanos = System.nanoTime() - start;
+
+        if (!sameState(interpreted, recompiled)) {
+            throw new IllegalStateException(workload + " ended in a different state when recompiled");
+        }
+        double interpretedMhz = interpretedCycles * 1e3 / interpretedNanos;
+        double recompiledMhz = recompiledCycles * 1e3 / recompiledNanos;
+        System.out.printf(Locale.ROOT, "%-20s %10.2f %10.2f %7.2fx %8d %12d %10d%n",
+                workload, interpretedMhz, recompiledMhz, recompiledMhz / interpretedMhz,
+                recompiler.getBlocksCompiled(), recompiler.getBlockRuns(), recompiler.getSideExits());
+    }
+
+    private static CPU newCpu(MacroWorkload workload) {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        workload.load(cpu.getCpuMemory());
+        cpu.getRegisters().PC = MacroWorkload.ORIGIN;
+        return cpu;
+    }
+
+    private static boolean sameState(CPU first, CPU second) {
+        CPURegisterState a = first.getRegisters();
+        CPURegisterState b = second.getRegisters();
+        if (a.PC != b.PC || a.A != b.A || a.X != b.X || a.Y != b.Y || a.S != b.S || a.getP() != b.getP()
+                || first.getCycles() != second.getCycles()) {
+            return false;
+        }
+        for (int addr = 0; addr < CPUMemory.ADDRESS_SPACE_SIZE; addr++) {
+            if (first.getCpuMemory().readByte(addr) != second.getCpuMemory().readByte(addr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // runs at least the given number of cycles and returns the number of instructions executed
+    private static long execute(CPU cpu, MacroWorkload workload, long cycles) {
+        long target = cpu.getCycles() + cycles;
+        long instructions = 0;
+        while (cpu.getCycles() < target) {
+            cpu.executeNextCmd();
+            instructions++;
+            if (cpu.isJammed()) {
+                throw new IllegalStateException(workload + " jammed at " + Integer.toHexString(cpu.getRegisters().PC));
+            }
+        }
+        return instructions;
+    }
+
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreads = (com.sun.management.ThreadMXBean) threads;
+            if (sunThreads.isThreadAllocatedMemorySupported() && sunThreads.isThreadAllocatedMemoryEnabled()) {
+                return sunThreads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, collector.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcMillis() {
+        long millis = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            millis += Math.max(0, collector.getCollectionTime());
+        }
+        return millis;
+    }
+
+    private static void printTable(List<Result> results, PrintStream out) {
+        out.printf(Locale.ROOT, "%-20s %10s %10s %10s %12s %8s %10s%n",
+                "workload", "MIPS", "MHz", "x NES", "bytes/instr", "gc ms", "decode hit");
+        for (Result result : results) {
+            out.printf(Locale.ROOT, "%-20s %10.2f %10.2f %10.1f %12.4f %8d %9.2f%%%n",
+                    result.workload, result.mips(), result.mhz(), result.mhz() / NES_CLOCK_MHZ,
+                    result.bytesPerInstruction(), result.gcMillis, result.decodeHitRate() * 100);
+        }
+    }
+
+    private static void writeJson(List<Result> results, Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+        builder.append("  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        builder.append("  \"javaVersion\": \"").append(System.getProperty("java.version")).append("\",\n");
+        builder.append("  \"nesClockMhz\": ").append(NES_CLOCK_MHZ).append(",\n");
+        builder.append("  \"results\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            Result result = results.get(i);
+            builder.append(String.format(Locale.ROOT,
+                    "    {\"workload\": \"%s\", \"instructions\": %d, \"cycles\": %d, \"nanos\": %d, "
+                            + "\"mips\": %.3f, \"mhz\": %.3f, \"nesMultiple\": %.3f, \"allocatedBytes\": %d, "
+                            + "\"bytesPerInstruction\": %.6f, \"gcCount\": %d, \"gcMillis\": %d, "
+                            + "\"decodeHits\": %d, \"decodeMisses\": %d, \"decodeInvalidations\": %d}",
+                    result.workload, result.instructions, result.cycles, result.nanos,
+                    result.mips(), result.mhz(), result.mhz() / NES_CLOCK_MHZ, result.allocatedBytes,
+                    result.bytesPerInstruction(), result.gcCount, result.gcMillis,
+                    result.decodeHits, result.decodeMisses, result.decodeInvalidations));
+            builder.append(i < results.size() - 1 ? ",\n" : "\n");
+        }
+        builder.append("  ]\n}\n");
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(builder.toString());
+        }
+    }
+}
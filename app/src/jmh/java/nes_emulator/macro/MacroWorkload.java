@@ -0,0 +1,214 @@
+package nes_emulator.macro;
+
+import nes_emulator.nes.components.memory.CPUMemory;
+
+// the programs run by MacroBenchmark, each one loops forever so it can run for any number of cycles
+enum MacroWorkload {
+    // copies 4 KB from $2000 to $3000 through zero page pointers
+    MEMCPY {
+        @Override
+        ProgramBuilder program() {
+            return new ProgramBuilder(ORIGIN)
+                    .label("start")
+                    .op(0xA9, 0x00)             // LDA #$00
+                    .op(0x85, 0x00)             // STA $00      source pointer
+                    .op(0x85, 0x02)             // STA $02      destination pointer
+                    .op(0xA9, 0x20)             // LDA #$20
+                    .op(0x85, 0x01)             // STA $01
+                    .op(0xA9, 0x30)             // LDA #$30
+                    .op(0x85, 0x03)             // STA $03
+                    .op(0xA2, 0x10)             // LDX #$10     pages
+                    .op(0xA0, 0x00)             // LDY #$00
+                    .label("copy")
+                    .op(0xB1, 0x00)             // LDA ($00),Y
+                    .op(0x91, 0x02)             // STA ($02),Y
+                    .op(0xC8)                   // INY
+                    .branch(0xD0, "copy")       // BNE copy
+                    .op(0xE6, 0x01)             // INC $01
+                    .op(0xE6, 0x03)             // INC $03
+                    .op(0xCA)                   // DEX
+                    .branch(0xD0, "copy")       // BNE copy
+                    .jump(0x4C, "start");       // JMP start
+        }
+    },
+
+    // sieve of Eratosthenes over 0-255, $2000+n is non-zero when n is composite
+    SIEVE {
+        @Override
+        ProgramBuilder program() {
+            return new ProgramBuilder(ORIGIN)
+                    .label("start")
+                    .op(0xA9, 0x00)             // LDA #$00
+                    .op(0xA2, 0x00)             // LDX #$00
+                    .label("clear")
+                    .op(0x9D, 0x00, 0x20)       // STA $2000,X
+                    .op(0xE8)                   // INX
+                    .branch(0xD0, "clear")      // BNE clear
+                    .op(0xA2, 0x02)             // LDX #$02
+                    .label("candidate")
+                    .op(0xBD, 0x00, 0x20)       // LDA $2000,X
+                    .branch(0xD0, "next")       // BNE next     already known to be composite
+                    .op(0x86, 0x04)             // STX $04
+                    .op(0x8A)                   // TXA
+                    .op(0x18)                   // CLC
+                    .label("mark")
+                    .op(0x65, 0x04)             // ADC $04
+                    .branch(0xB0, "next")       // BCS next     past 255
+                    .op(0xA8)                   // TAY
+                    .op(0xA9, 0x01)             // LDA #$01
+                    .op(0x99, 0x00, 0x20)       // STA $2000,Y
+                    .op(0x98)                   // TYA
+                    .branch(0x90, "mark")       // BCC mark     carry is still clear
+                    .label("next")
+                    .op(0xE8)                   // INX
+                    .branch(0xD0, "candidate")  // BNE candidate
+                    .jump(0x4C, "start");       // JMP start
+        }
+    },
+
+    // bitwise CRC32 of the 256 bytes at $2000, the crc is kept in $10-$13 and the final value stored in $14-$17
+    CRC32 {
+        @Override
+        ProgramBuilder program() {
+            ProgramBuilder builder = new ProgramBuilder(ORIGIN)
+                    .label("start")
+                    .op(0xA9, 0xFF)             // LDA #$FF
+                    .op(0x85, 0x10)             // STA $10
+                    .op(0x85, 0x11)             // STA $11
+                    .op(0x85, 0x12)             // STA $12
+                    .op(0x85, 0x13)             // STA $13
+                    .op(0xA0, 0x00)             // LDY #$00
+                    .label("byte")
+                    .op(0xB9, 0x00, 0x20)       // LDA $2000,Y
+                    .op(0x45, 0x10)             // EOR $10
+                    .op(0x85, 0x10)             // STA $10
+                    .op(0xA2, 0x08)             // LDX #$08
+                    .label("bit")
+                    .op(0x46, 0x13)             // LSR $13
+                    .op(0x66, 0x12)             // ROR $12
+                    .op(0x66, 0x11)             // ROR $11
+                    .op(0x66, 0x10)             // ROR $10
+                    .branch(0x90, "skip");      // BCC skip
+            // crc ^= 0xEDB88320
+            int[] polynomial = {0x20, 0x83, 0xB8, 0xED};
+            for (int i = 3; i >= 0; i--) {
+                builder.op(0xA5, 0x10 + i)      // LDA $10+i
+                        .op(0x49, polynomial[i]) // EOR #poly
+                        .op(0x85, 0x10 + i);    // STA $10+i
+            }
+            builder.label("skip")
+                    .op(0xCA)                   // DEX
+                    .branch(0xD0, "bit")        // BNE bit
+                    .op(0xC8)                   // INY
+                    .branch(0xD0, "byte");      // BNE byte
+            for (int i = 0; i < 4; i++) {
+                builder.op(0xA5, 0x10 + i)      // LDA $10+i
+                        .op(0x49, 0xFF)         // EOR #$FF
+                        .op(0x85, 0x14 + i);    // STA $14+i
+            }
+            return builder.jump(0x4C, "start"); // JMP start
+        }
+
+        @Override
+        void initialize(CPUMemory memory) {
+            for (int i = 0; i < 0x100; i++) {
+                memory.writeByte(0x2000 + i, i);
+            }
+        }
+    },
+
+    // 16 bit fibonacci numbers and an 8x8 bit shift-and-add multiply, all on zero page
+    ZEROPAGE_ARITHMETIC {
+        @Override
+        ProgramBuilder program() {
+            return new ProgramBuilder(ORIGIN)
+                    .label("start")
+                    .op(0xA9, 0x00)             // LDA #$00
+                    .op(0x85, 0x20)             // STA $20      a = 0
+                    .op(0x85, 0x21)             // STA $21
+                    .op(0x85, 0x23)             // STA $23      b = 1
+                    .op(0xA9, 0x01)             // LDA #$01
+                    .op(0x85, 0x22)             // STA $22
+                    .op(0xA2, 0x18)             // LDX #$18     24 steps
+                    .label("fibonacci")
+                    .op(0x18)                   // CLC
+                    .op(0xA5, 0x20)             // LDA $20
+                    .op(0x65, 0x22)             // ADC $22
+                    .op(0x85, 0x24)             // STA $24      c = a + b
+                    .op(0xA5, 0x21)             // LDA $21
+                    .op(0x65, 0x23)             // ADC $23
+                    .op(0x85, 0x25)             // STA $25
+                    .op(0xA5, 0x22)             // LDA $22
+                    .op(0x85, 0x20)             // STA $20      a = b
+                    .op(0xA5, 0x23)             // LDA $23
+                    .op(0x85, 0x21)             // STA $21
+                    .op(0xA5, 0x24)             // LDA $24
+                    .op(0x85, 0x22)             // STA $22      b = c
+                    .op(0xA5, 0x25)             // LDA $25
+                    .op(0x85, 0x23)             // STA $23
+                    .op(0xCA)                   // DEX
+                    .branch(0xD0, "fibonacci")  // BNE fibonacci
+                    .op(0xE6, 0x30)             // INC $30
+                    .op(0xA5, 0x30)             // LDA $30
+                    .op(0x85, 0x31)             // STA $31      square $30
+                    .op(0xA9, 0x00)             // LDA #$00
+                    .op(0xA2, 0x08)             // LDX #$08
+                    .op(0x46, 0x31)             // LSR $31
+                    .label("multiply")
+                    .branch(0x90, "shift")      // BCC shift
+                    .op(0x18)                   // CLC
+                    .op(0x65, 0x30)             // ADC $30
+                    .label("shift")
+                    .op(0x6A)                   // ROR A
+                    .op(0x66, 0x31)             // ROR $31
+                    .op(0xCA)                   // DEX
+                    .branch(0xD0, "multiply")   // BNE multiply
+                    .op(0x85, 0x32)             // STA $32      product in $32:$31
+                    .jump(0x4C, "start");       // JMP start
+        }
+    },
+
+    // a recursive call tree 10 levels deep, 2047 JSR/RTS pairs counted in $40-$41
+    RECURSION {
+        @Override
+        ProgramBuilder program() {
+            return new ProgramBuilder(ORIGIN)
+                    .label("start")
+                    .op(0xA9, 0x00)             // LDA #$00
+                    .op(0x85, 0x40)             // STA $40
+                    .op(0x85, 0x41)             // STA $41
+                    .op(0xA2, 0x0A)             // LDX #$0A
+                    .jump(0x20, "tree")         // JSR tree
+                    .jump(0x4C, "start")        // JMP start
+                    .label("tree")
+                    .op(0xE6, 0x40)             // INC $40
+                    .branch(0xD0, "counted")    // BNE counted
+                    .op(0xE6, 0x41)             // INC $41
+                    .label("counted")
+                    .op(0xE0, 0x00)             // CPX #$00
+                    .branch(0xF0, "return")     // BEQ return
+                    .op(0xCA)                   // DEX
+                    .jump(0x20, "tree")         // JSR tree
+                    .jump(0x20, "tree")         // JSR tree
+                    .op(0xE8)                   // INX
+                    .label("return")
+                    .op(0x60);                  // RTS
+        }
+    };
+
+    static final int ORIGIN = 0x0600;
+
+    abstract ProgramBuilder program();
+
+    // data the program needs besides its code
+    void initialize(CPUMemory memory) {
+    }
+
+    void load(CPUMemory memory) {
+        int[] program = program().build();
+        for (int i = 0; i < program.length; i++) {
+            memory.writeByte(ORIGIN + i, program[i]);
+        }
+        initialize(memory);
+    }
+}
@@ -0,0 +1,81 @@
+package nes_emulator.macro;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// lays out a hand-assembled 6502 program, branch and jump targets are given as labels and filled in by build()
+class ProgramBuilder {
+    private final int origin;
+    private final List<Integer> bytes = new ArrayList<>();
+    private final Map<String, Integer> labels = new HashMap<>();
+    private final Map<Integer, String> branches = new HashMap<>(); // offset of the operand to its label
+    private final Map<Integer, String> jumps = new HashMap<>();
+
+    ProgramBuilder(int origin) {
+        this.origin = origin;
+    }
+
+    int getOrigin() {
+        return origin;
+    }
+
+    ProgramBuilder label(String name) {
+        labels.put(name, origin + bytes.size());
+        return this;
+    }
+
+    // an instruction given as its opcode and operand bytes
+    ProgramBuilder op(int... values) {
+        for (int value : values) {
+            bytes.add(value & 0xFF);
+        }
+        return this;
+    }
+
+    // a relative branch to the label
+    ProgramBuilder branch(int opcode, String label) {
+        bytes.add(opcode);
+        branches.put(bytes.size(), label);
+        bytes.add(0);
+        return this;
+    }
+
+    // an instruction with an absolute address operand, e.g. JMP or JSR, to the label
+    ProgramBuilder jump(int opcode, String label) {
+        bytes.add(opcode);
+        jumps.put(bytes.size(), label);
+        bytes.add(0);
+        bytes.add(0);
+        return this;
+    }
+
+    int[] build() {
+        int[] program = new int[bytes.size()];
+        for (int i = 0; i < program.length; i++) {
+            program[i] = bytes.get(i);
+        }
+        for (Map.Entry<Integer, String> branch : branches.entrySet()) {
+            int offset = target(branch.getValue()) - (origin + branch.getKey() + 1);
+            if (offset < -128 || offset > 127) {
+                throw new IllegalStateException("Branch to " + branch.getValue() + " is out of range");
+            }
+            program[branch.getKey()] = offset & 0xFF;
+        }
+        for (Map.Entry<Integer, String> jump : jumps.entrySet()) {
+            int target = target(jump.getValue());
+            program[jump.getKey()] = target & 0xFF;
+            program[jump.getKey() + 1] = target >> 8;
+        }
+        return program;
+    }
+
+    private int target(String label) {
+        Integer address = labels.get(label);
+        if (address == null) {
+            throw new IllegalStateException("Unknown label " + label);
+        }
+        return address;
+    }
+}
@@ -0,0 +1,92 @@
+package nes_emulator.nes.components.bus;
+
+import nes_emulator.nes.components.cpu.CPU;
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// MainBus reads and writes over 256 bytes of one page
+// "memory" is the Memory fast path, "device" is a page mapped to a plain BusDevice and "recording" is memory
+// while the bus is recording
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BusBenchmark {
+
+    private static final int OPERATIONS = 256;
+    private static final int PAGE = 0x0300;
+
+    @Param({"memory", "device", "recording"})
+    public String page;
+
+    private MainBus mainBus;
+    private BusRecorder recorder;
+
+    // a register-like device, so the page does not take the Memory fast path
+    private static class Registers implements BusDevice {
+        private final byte[] values = new byte[8];
+
+        @Override
+        public int readByte(int addr) {
+            return values[addr & 7] & 0xFF;
+        }
+
+        @Override
+        public void writeByte(int addr, int val) {
+            values[addr & 7] = (byte) val;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        mainBus = cpu.getMainBus();
+        if (page.equals("device")) {
+            mainBus.mapDevice(PAGE, PAGE + 0xFF, new Registers());
+        } else if (page.equals("recording")) {
+            // the recorder is cleared on every invocation, so it does not grow
+            recorder = new BusRecorder(OPERATIONS);
+            mainBus.startRecording(recorder);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int read() {
+        if (recorder != null) {
+            recorder.clear();
+        }
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += mainBus.readByte(PAGE + i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void write() {
+        if (recorder != null) {
+            recorder.clear();
+        }
+        for (int i = 0; i < OPERATIONS; i++) {
+            mainBus.writeByte(PAGE + i, i);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.bus.MainBus;
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// the CPUGeneratedOpcodes method of one opcode in each addressing mode, a load where the mode has one,
+// the operands are random memory contents
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddressingModeBenchmark {
+    private static final int PC = 0x0200;
+
+    @Param({
+            "IMPLIED",
+            "IMMEDIATE",
+            "ABSOLUTE",
+            "ZEROPAGE",
+            "INDEXED_ABSOLUTE_X",
+            "INDEXED_ABSOLUTE_Y",
+            "INDEXED_ZEROPAGE_X",
+            "INDEXED_ZEROPAGE_Y",
+            "INDIRECT",
+            "PRE_INDEXED_INDIRECT",
+            "POST_INDEXED_INDIRECT",
+            "RELATIVE",
+            "ACCUMULATOR",
+    })
+    public String addressingMode;
+
+    private CPU cpu;
+    private MainBus mainBus;
+    private CPURegisterState registers;
+    private int opcode;
+
+    @Setup
+    public void setup() {
+        cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        Random random = new Random(0x6502);
+        CPUMemory memory = cpu.getCpuMemory();
+        for (int addr = 0; addr < CPUMemory.ADDRESS_SPACE_SIZE; addr++) {
+            memory.writeByte(addr, random.nextInt(0x100));
+        }
+
+        mainBus = cpu.getMainBus();
+        registers = cpu.getRegisters();
+        registers.X = 0x11;
+        registers.Y = 0x22;
+        opcode = opcodeFor(CPUInstruction.AddressingMode.valueOf(addressingMode));
+    }
+
+    private static int opcodeFor(CPUInstruction.AddressingMode mode) {
+        switch (mode) {
+            case IMPLIED: return 0xEA;               // NOP
+            case IMMEDIATE: return 0xA9;             // LDA #
+            case ABSOLUTE: return 0xAD;              // LDA abs
+            case ZEROPAGE: return 0xA5;              // LDA zp
+            case INDEXED_ABSOLUTE_X: return 0xBD;    // LDA abs,X
+            case INDEXED_ABSOLUTE_Y: return 0xB9;    // LDA abs,Y
+            case INDEXED_ZEROPAGE_X: return 0xB5;    // LDA zp,X
+            case INDEXED_ZEROPAGE_Y: return 0xB6;    // LDX zp,Y
+            case INDIRECT: return 0x6C;              // JMP (ind)
+            case PRE_INDEXED_INDIRECT: return 0xA1;  // LDA (zp,X)
+            case POST_INDEXED_INDIRECT: return 0xB1; // LDA (zp),Y
+            case RELATIVE: return 0xD0;              // BNE
+            case ACCUMULATOR: return 0x2A;           // ROL A
+            default: throw new IllegalArgumentException(mode.name());
+        }
+    }
+
+    // the operand is read from the bus like CPUInstruction does, the PC goes back so every call runs the same bytes
+    @Benchmark
+    public int execute() {
+        registers.PC = PC;
+        int numBytes = CPUOpcodeTable.get(opcode).numBytes;
+        int operand = numBytes == 1 ? 0
+                : numBytes == 2 ? mainBus.readByte(PC + 1)
+                : mainBus.readByte(PC + 1) | (mainBus.readByte(PC + 2) << 8);
+        return CPUGeneratedOpcodes.execute(opcode, cpu, registers, mainBus, operand) + registers.PC;
+    }
+}
@@ -0,0 +1,194 @@
+package nes_emulator.nes.components.cpu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// compares the CPUAluTables lookups against computing the result and flags with arithmetic
+// like CPUInstructionList did before the tables
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AluBenchmark {
+
+    private static final int OPERATIONS = 1024;
+
+    private int[] accumulators;
+    private int[] operands;
+    private int[] carries;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(0x6502);
+        accumulators = new int[OPERATIONS];
+        operands = new int[OPERATIONS];
+        carries = new int[OPERATIONS];
+        for (int i = 0; i < OPERATIONS; i++) {
+            accumulators[i] = random.nextInt(0x100);
+            operands[i] = random.nextInt(0x100);
+            carries[i] = random.nextInt(2);
+        }
+    }
+
+    // returns the result with N, V, Z and C packed above it, the way the old add and updateStatusFlags built them
+    private static int addArithmetic(int first, int second, int c) {
+        int result = first + second + c;
+
+        int carry_bit = (result >> 8) & 1;
+        int overflow_bit = 0;
+
+        boolean f7 = ((first >> 7) & 1) == 1;
+        boolean s7 = ((second >> 7) & 1) == 1;
+        boolean o7 = ((result >> 7) & 1) == 1;
+
+        if ((!f7 && !s7 && o7) || (f7 && s7 && !o7)) {
+            overflow_bit = 1;
+        }
+
+        result &= 0xFF;
+        int zeroFlag = 0;
+        if (result == 0) {
+            zeroFlag = 1;
+        }
+        int negativeFlag = 0;
+        if (((result >> 7) & 1) == 1) {
+            negativeFlag = 1;
+        }
+        return result | (negativeFlag << 15) | (overflow_bit << 14) | (zeroFlag << 9) | (carry_bit << 8);
+    }
+
+    private static int addTable(int first, int second, int c) {
+        int entry = CPUAluTables.ADD[CPUAluTables.addIndex(first, second, c)];
+        int result = entry & 0xFF;
+        return result | ((result & 0x80) << 8) | ((entry & 0x200) << 5) | (result == 0 ? 0x200 : 0) | (entry & 0x100);
+    }
+
+    private static int rolArithmetic(int value, int c) {
+        int result = ((value << 1) & 0xFF) | (c & 1);
+        int zeroFlag = 0;
+        if (result == 0) {
+            zeroFlag = 1;
+        }
+        int negativeFlag = 0;
+        if (((result >> 7) & 1) == 1) {
+            negativeFlag = 1;
+        }
+        return result | (negativeFlag << 15) | (zeroFlag << 9) | (((value >> 7) & 1) << 8);
+    }
+
+    private static int rolTable(int value, int c) {
+        int entry = CPUAluTables.ROL[CPUAluTables.shiftIndex(value, c)];
+        int result = entry & 0xFF;
+        return result | ((result & 0x80) << 8) | (result == 0 ? 0x200 : 0) | (entry & 0x100);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int adcArithmetic() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += addArithmetic(accumulators[i], operands[i], carries[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int adcTable() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += addTable(accumulators[i], operands[i], carries[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int sbcArithmetic() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += addArithmetic(accumulators[i], (~operands[i]) & 0xFF, carries[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int sbcTable() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += addTable(accumulators[i], operands[i] ^ 0xFF, carries[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int cmpArithmetic() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int a = accumulators[i];
+            int value = operands[i];
+            int result = (a - value) & 0xFF;
+
+            int carry_bit = 0;
+            if (a >= value) {
+                carry_bit = 1;
+            }
+            int zeroFlag = 0;
+            if (result == 0) {
+                zeroFlag = 1;
+            }
+            int negativeFlag = 0;
+            if (((result >> 7) & 1) == 1) {
+                negativeFlag = 1;
+            }
+            sum += result | (negativeFlag << 15) | (zeroFlag << 9) | (carry_bit << 8);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int cmpTable() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += addTable(accumulators[i], operands[i] ^ 0xFF, 1) & 0x83FF;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int rolArithmetic() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += rolArithmetic(operands[i], carries[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public int rolTable() {
+        int sum = 0;
+        for (int i = 0; i < OPERATIONS; i++) {
+            sum += rolTable(operands[i], carries[i]);
+        }
+        return sum;
+    }
+}
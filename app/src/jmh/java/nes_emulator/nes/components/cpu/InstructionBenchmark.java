@@ -0,0 +1,124 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// CPU.executeNextCmd for one kind of instruction at a time
+// the memory from PROGRAM_START is filled with copies of the instruction followed by a JMP back to the start,
+// so apart from one JMP every few thousand instructions only that instruction runs
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstructionBenchmark {
+
+    private static final int PROGRAM_START = 0x0200;
+    private static final int PROGRAM_END = 0x7000;
+    private static final int SUBROUTINE = 0x8000;
+    private static final int POINTER = 0x20; // zero page pointer used by the indirect instructions
+    private static final int DATA = 0x0300;
+
+    @Param({
+            "LDA_IMMEDIATE",    // load
+            "STA_ZEROPAGE",     // store
+            "ADC_ABSOLUTE_X",   // arithmetic
+            "CMP_INDIRECT_Y",   // compare
+            "ASL_ACCUMULATOR",  // shift
+            "INX",              // increment
+            "TAX",              // transfer
+            "CLC",              // flag
+            "BNE_TAKEN",        // branch
+            "BEQ_NOT_TAKEN",    // branch
+            "PHA_PLA",          // stack
+            "JSR_RTS",          // subroutine
+            "JMP_ABSOLUTE",     // jump
+    })
+    public String instruction;
+
+    private CPU cpu;
+
+    @Setup
+    public void setup() {
+        cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        CPUMemory memory = cpu.getCpuMemory();
+
+        memory.writeByte(POINTER, DATA & 0xFF);
+        memory.writeByte(POINTER + 1, DATA >> 8);
+        memory.writeByte(SUBROUTINE, 0x60); // RTS
+
+        int addr = PROGRAM_START;
+        if (instruction.equals("JMP_ABSOLUTE")) {
+            // jumps to itself
+            writeJump(memory, addr, PROGRAM_START);
+        } else {
+            int[] unit = unit(instruction);
+            while (addr + unit.length + 3 <= PROGRAM_END) {
+                for (int value : unit) {
+                    memory.writeByte(addr++, value);
+                }
+            }
+            writeJump(memory, addr, PROGRAM_START);
+        }
+
+        CPURegisterState registers = cpu.getRegisters();
+        registers.PC = PROGRAM_START;
+        registers.setP(0); // Z clear, so BNE is taken and BEQ is not
+    }
+
+    private static int[] unit(String instruction) {
+        switch (instruction) {
+            case "LDA_IMMEDIATE":
+                return new int[]{0xA9, 0x42};
+            case "STA_ZEROPAGE":
+                return new int[]{0x85, 0x10};
+            case "ADC_ABSOLUTE_X":
+                return new int[]{0x7D, DATA & 0xFF, DATA >> 8};
+            case "CMP_INDIRECT_Y":
+                return new int[]{0xD1, POINTER};
+            case "ASL_ACCUMULATOR":
+                return new int[]{0x0A};
+            case "INX":
+                return new int[]{0xE8};
+            case "TAX":
+                return new int[]{0xAA};
+            case "CLC":
+                return new int[]{0x18};
+            case "BNE_TAKEN":
+                return new int[]{0xD0, 0x00};
+            case "BEQ_NOT_TAKEN":
+                return new int[]{0xF0, 0x00};
+            case "PHA_PLA":
+                return new int[]{0x48, 0x68};
+            case "JSR_RTS":
+                return new int[]{0x20, SUBROUTINE & 0xFF, SUBROUTINE >> 8};
+            default:
+                throw new IllegalArgumentException("Unknown instruction " + instruction);
+        }
+    }
+
+    private static void writeJump(CPUMemory memory, int addr, int target) {
+        memory.writeByte(addr, 0x4C);
+        memory.writeByte(addr + 1, target & 0xFF);
+        memory.writeByte(addr + 2, target >> 8);
+    }
+
+    @Benchmark
+    public int executeNextCmd() {
+        return cpu.executeNextCmd();
+    }
+}
@@ -0,0 +1,56 @@
+package nes_emulator.nes.components.cpu;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// CPUStack push and pop, the stack pointer never wraps so the overflow and underflow messages are not printed
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StackBenchmark {
+
+    private static final int DEPTH = 128;
+
+    private CPUStack stack;
+    private int value;
+
+    @Setup
+    public void setup() {
+        CPU cpu = new CPU();
+        stack = cpu.getCpuStack();
+    }
+
+    @Benchmark
+    public int pushPop() {
+        stack.push(value++);
+        return stack.pop();
+    }
+
+    // fills half the stack and empties it again, like a deep chain of subroutine calls
+    @Benchmark
+    @OperationsPerInvocation(2 * DEPTH)
+    public int pushAllPopAll() {
+        for (int i = 0; i < DEPTH; i++) {
+            stack.push(i);
+        }
+        int sum = 0;
+        for (int i = 0; i < DEPTH; i++) {
+            sum += stack.pop();
+        }
+        return sum;
+    }
+}
@@ -3,221 +3,254 @@
  */
 package nes_emulator;
 
+import nes_emulator.nes.components.bus.BusRecorder;
 import nes_emulator.nes.components.cpu.CPU;
 import nes_emulator.nes.components.cpu.CPURegisterState;
+import nes_emulator.nes.components.cpu.OpcodeStatistics;
 import nes_emulator.nes.components.memory.CPUMemory;
-
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import nes_emulator.nes.diagnostics.DiagnosticLog;
+
+import nes_emulator.singlestep.ResultCache;
+import nes_emulator.singlestep.SingleStepDiff;
+import nes_emulator.singlestep.SingleStepFailure;
+import nes_emulator.singlestep.SingleStepJUnitReport;
+import nes_emulator.singlestep.SingleStepJsonReport;
+import nes_emulator.singlestep.SingleStepState;
+import nes_emulator.singlestep.SingleStepTest;
+import nes_emulator.singlestep.SingleStepSource;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileDescriptor;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.PrintStream;
 import java.util.ArrayList;
-
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
+import java.util.List;
+import javax.management.JMException;
 
 
 public class App {
-    public static void main(String[] args) throws FileNotFoundException, IOException, org.json.simple.parser.ParseException {
-        CPU cpu = new CPU();
-        
-        
-        String[] hexArr = new String[0x100];
+    // the committed fixture, relative to the app project directory gradle run starts in
+    public static final String FIXTURE_DIRECTORY = "src/test/resources/singlestep";
+    // directory with the <opcode>.json files, or the <opcode>.bin files made by SingleStepCorpusConverter
+    // any other corpus comes from -Dsinglestep.dir (gradle run -PsingleStepDir=<dir>) or the first argument
+    public static final String DEFAULT_TEST_DIRECTORY = System.getProperty("singlestep.dir", FIXTURE_DIRECTORY);
+
+    // usage: App [test directory] [number of worker threads] [result cache file]
+    //            [--junit-xml=<file>] [--json-lines=<file>] [--cycles] [--opcode-stats=<file>] [--diagnostics]
+    // --cycles records the bus and checks it against the cycles of every case
+    // --opcode-stats counts the instructions run, shows the counts over JMX and writes them to a csv file at the end
+    // --diagnostics prints a summary of events such as stack wraps to stderr once a second
+    // the result cache defaults to a file in the test directory, pass "none" to run every opcode
+    // the fixture has no cache by default, so running it leaves no file in the source tree
+    public static void main(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        String junitFile = null;
+        String jsonFile = null;
+        boolean validateCycles = false;
+        String opcodeStatsFile = null;
+        boolean diagnostics = false;
+        for (String arg : args) {
+            if (arg.equals("--cycles")) {
+                validateCycles = true;
+            } else if (arg.equals("--diagnostics")) {
+                diagnostics = true;
+            } else if (arg.startsWith("--opcode-stats=")) {
+                opcodeStatsFile = arg.substring("--opcode-stats=".length());
+            } else if (arg.startsWith("--junit-xml=")) {
+                junitFile = arg.substring("--junit-xml=".length());
+            } else if (arg.startsWith("--json-lines=")) {
+                jsonFile = arg.substring("--json-lines=".length());
+            } else {
+                positional.add(arg);
+            }
+        }
+        String testDirectory = positional.size() > 0 ? positional.get(0) : DEFAULT_TEST_DIRECTORY;
+        int workers = positional.size() > 1 ? Integer.parseInt(positional.get(1)) : Runtime.getRuntime().availableProcessors();
+        String cacheFile = positional.size() > 2 ? positional.get(2)
+                : testDirectory.equals(FIXTURE_DIRECTORY) ? "none"
+                : new File(testDirectory, ResultCache.DEFAULT_FILE_NAME).getPath();
+
+        // failing runs print a lot, so stdout is buffered and flushed at the end
+        PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), 1 << 16), false);
+
+        // a corpus may leave out opcodes, e.g. the fixture only has the official ones
+        List<String> opcodes = new ArrayList<>();
         for (int i = 0; i <= 0xFF; i++) {
             String hex = Integer.toHexString(i);
             if (hex.length() < 2) {
                 hex = "0" + hex; // Add leading zero if necessary
             }
-            hexArr[i] = hex;
+            if (SingleStepSource.file(testDirectory, hex).isFile()) {
+                opcodes.add(hex);
+            }
         }
+        String[] hexArr = opcodes.toArray(new String[0]);
 
-        int[][] results = new int[hexArr.length][2];
-
-        // for (int i = 0; i < 1; i++) {
-        for (int i = 0; i < hexArr.length; i++) {
-            System.out.println("Running tests for opcode " + hexArr[i]);
-            int[] testsPassed = runTestForOpcode(cpu, hexArr[i]);
-            System.out.println(testsPassed[0] + "/" + testsPassed[1] + " for opcode " + hexArr[i]);
-            results[i][0] = testsPassed[0];
-            results[i][1] = testsPassed[1];
+        ParallelTestRunner runner = new ParallelTestRunner(testDirectory, workers);
+        runner.setValidateCycles(validateCycles);
+        OpcodeStatistics opcodeStatistics = null;
+        if (opcodeStatsFile != null) {
+            opcodeStatistics = new OpcodeStatistics();
+            try {
+                opcodeStatistics.registerMBean();
+            } catch (JMException e) {
+                System.err.println("Could not register the opcode statistics MBean: " + e.getMessage());
+            }
+            runner.setOpcodeStatistics(opcodeStatistics);
+        }
+        if (!cacheFile.equals("none")) {
+            runner.setResultCache(new ResultCache(new File(cacheFile)));
+        }
+        if (junitFile != null) {
+            runner.addReport(new SingleStepJUnitReport(new File(junitFile)));
+        }
+        if (jsonFile != null) {
+            runner.addReport(new SingleStepJsonReport(new File(jsonFile)));
+        }
+        DiagnosticLog diagnosticLog = null;
+        if (diagnostics) {
+            diagnosticLog = new DiagnosticLog();
+            diagnosticLog.start();
+            runner.setDiagnosticLog(diagnosticLog);
+        }
+        int[][] results;
+        try {
+            results = runner.run(hexArr, out);
+        } finally {
+            if (diagnosticLog != null) {
+                diagnosticLog.close();
+            }
+        }
+        if (opcodeStatistics != null) {
+            opcodeStatistics.dumpCsv(opcodeStatsFile);
         }
 
-        System.out.println("==============================================");
-        System.out.println("==============================================");
-        System.out.println("==============================================");
-        System.out.println("==============================================");
-        System.out.println("Final results: ");
+        out.println("==============================================");
+        out.println("==============================================");
+        out.println("==============================================");
+        out.println("==============================================");
+        out.println("Final results: ");
         for (int i = 0; i < results.length; i++) {
             if (results[i][0] == -1) continue;
             if (results[i][0] == results[i][1]) {
-                System.out.println("Opcode " + hexArr[i] + ": Passed");
+                out.println("Opcode " + hexArr[i] + ": Passed");
             } else {
-                System.out.println("Opcode: " + hexArr[i] + ": Failed " + results[i][0] + "/" + results[i][1]);
+                out.println("Opcode: " + hexArr[i] + ": Failed " + results[i][0] + "/" + results[i][1]);
 
             }
         }
+        out.flush();
     }
 
-    public static int[] runTestForOpcode(CPU cpu, String opcode)  throws IOException, ParseException {
-        String filename = "/home/chaitanyae/Documents/Projects/NESEmulatorJava/test/" + opcode + ".json";
-        JSONParser parser = new JSONParser();
-        Reader reader = new FileReader(filename);
+    public static int[] runTestForOpcode(CPU cpu, String testDirectory, String opcode) throws IOException {
+        // the cases are streamed one at a time into the same SingleStepTest
+        // the binary corpus is used when it exists since it is much faster to read than the json
+        try (SingleStepSource reader = SingleStepSource.open(testDirectory, opcode)) {
+            return runTests(cpu, reader, Integer.MAX_VALUE, System.out);
+        }
+    }
 
-        JSONArray opcodeList = (JSONArray) parser.parse(reader);
+    // runs up to maxTests cases from the source, failures are printed to out
+    public static int[] runTests(CPU cpu, SingleStepSource source, int maxTests, PrintStream out) throws IOException {
+        return runTests(cpu, source, maxTests, out, null, 0);
+    }
 
+    // same as above, and the first maxFailures failing cases are added to failures when it is not null
+    public static int[] runTests(CPU cpu, SingleStepSource source, int maxTests, PrintStream out,
+                                 List<SingleStepFailure> failures, int maxFailures) throws IOException {
+        SingleStepTest test = new SingleStepTest();
+        SingleStepDiff diff = new SingleStepDiff();
         int num_correct = 0;
-        for (Object obj : opcodeList) {
-            try {
-                num_correct += (runTest(cpu, (JSONObject) obj) ? 1 : 0);
-            } catch (Exception e) {
-                return new int[]{-1, opcodeList.size()};
+        int num_tests = 0;
+        while (num_tests < maxTests && source.next(test)) {
+            num_tests++;
+            boolean passed = runTest(cpu, test, diff, out);
+            if (cpu.getStopReason() == CPU.STOP_JAMMED) {
+                // the opcode is not implemented yet
+                return new int[]{-1, num_tests};
+            }
+            if (passed) {
+                num_correct++;
+            } else if (failures != null && failures.size() < maxFailures) {
+                failures.add(diff.toFailure(test));
             }
         }
-        return new int[]{num_correct, opcodeList.size()};
+        return new int[]{num_correct, num_tests};
     }
 
-    public static boolean runTest(CPU cpu, JSONObject main) throws Exception {
+    public static boolean runTest(CPU cpu, SingleStepTest test) {
+        return runTest(cpu, test, new SingleStepDiff(), System.out);
+    }
 
-        JSONObject initial_vals = (JSONObject) main.get("initial");
-        JSONObject final_vals = (JSONObject) main.get("final");
+    public static boolean runTest(CPU cpu, SingleStepTest test, PrintStream out) {
+        return runTest(cpu, test, new SingleStepDiff(), out);
+    }
 
-        initializeWithInitialVals(cpu, initial_vals);
+    // the differences are left in diff
+    public static boolean runTest(CPU cpu, SingleStepTest test, SingleStepDiff diff, PrintStream out) {
 
-        cpu.executeNextCmd();
+        SingleStepState initial_vals = test.initialState;
+        SingleStepState final_vals = test.finalState;
 
-        String diff = checkCorrectFinalResult(cpu, final_vals);
+        initializeWithInitialVals(cpu, initial_vals);
 
-        if (!diff.equals("")) {
-            System.out.println("=================================");
-            System.out.println((String) main.get("name"));
-            System.out.println(initial_vals);
-            System.out.println(diff);
-            System.out.println("=================================");
+        // when the bus is recording, the accesses are checked against the cycles of the case as well
+        BusRecorder recorder = cpu.getMainBus().getRecorder();
+        if (recorder != null) {
+            recorder.clear();
         }
 
-        return diff.equals("");
-    }
-
-    public static void initializeWithInitialVals(CPU cpu, JSONObject initial_vals) {
-        Long pc = (Long) initial_vals.get("pc");
-        Long s = (Long) initial_vals.get("s");
-        Long a = (Long) initial_vals.get("a");
-        Long y = (Long) initial_vals.get("y");
-        Long x = (Long) initial_vals.get("x");
-        Long p = (Long) initial_vals.get("p");
-
-        JSONArray ram = (JSONArray) initial_vals.get("ram");
-        int[][] ram_out = new int[ram.size()][2];
-        int i = 0;
-        for (Object one_ram : ram) {
-            JSONArray one_ram_arr = (JSONArray) one_ram;
-            Long address = (Long) one_ram_arr.get(0);
-            Long value = (Long) one_ram_arr.get(1);
-
-            ram_out[i][0] = address.intValue();
-            ram_out[i][1] = value.intValue();
+        // a budget of one cycle runs exactly one instruction
+        cpu.runCycles(1);
+        if (cpu.getStopReason() == CPU.STOP_JAMMED) {
+            return false;
+        }
 
-            i++;
+        boolean passed = diff.compare(cpu, final_vals);
+        if (recorder != null) {
+            passed = diff.compareCycles(recorder, test);
         }
+        if (passed) {
+            return true;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("=================================\n");
+        builder.append(test.getName()).append('\n');
+        builder.append(initial_vals).append('\n');
+        diff.appendTo(builder);
+        builder.append("=================================");
+        out.println(builder);
+        return false;
+    }
 
+    public static void initializeWithInitialVals(CPU cpu, SingleStepState initial_vals) {
         CPURegisterState cpuRegisterState = cpu.getRegisters();
         CPUMemory cpuMemory = cpu.getCpuMemory();
 
         // initializing registers
-        cpuRegisterState.A = a.intValue();
-        cpuRegisterState.PC = pc.intValue();
-        cpuRegisterState.S = s.intValue();
-        cpuRegisterState.X = x.intValue();
-        cpuRegisterState.Y = y.intValue();
-        cpuRegisterState.P = p.intValue();
+        cpu.setJammed(false);
+        cpuRegisterState.A = initial_vals.a;
+        cpuRegisterState.PC = initial_vals.pc;
+        cpuRegisterState.S = initial_vals.s;
+        cpuRegisterState.X = initial_vals.x;
+        cpuRegisterState.Y = initial_vals.y;
+        cpuRegisterState.setP(initial_vals.p);
 
         // initializing ram
-        cpuMemory.initialize(ram_out);
+        cpuMemory.initialize(initial_vals.ram, initial_vals.ramSize);
     }
 
-    public static String checkCorrectFinalResult(CPU cpu, JSONObject final_vals) {
-        CPURegisterState cpuRegisterState = cpu.getRegisters();
-        CPUMemory cpuMemory = cpu.getCpuMemory();
-
-        Long pc = (Long) final_vals.get("pc");
-        Long s = (Long) final_vals.get("s");
-        Long a = (Long) final_vals.get("a");
-        Long y = (Long) final_vals.get("y");
-        Long x = (Long) final_vals.get("x");
-        Long p = (Long) final_vals.get("p");
-
-        JSONArray ram = (JSONArray) final_vals.get("ram");
-        int[][] ram_out = new int[ram.size()][2];
-        int i = 0;
-        for (Object one_ram : ram) {
-            JSONArray one_ram_arr = (JSONArray) one_ram;
-            Long address = (Long) one_ram_arr.get(0);
-            Long value = (Long) one_ram_arr.get(1);
-
-            ram_out[i][0] = address.intValue();
-            ram_out[i][1] = value.intValue();
-
-            i++;
-        }
-
-        ArrayList<int[]> resultRam = cpuMemory.getMemoryArr();
-
-        String diffString = "";
-
-        if (cpuRegisterState.PC != pc.intValue()) {
-            diffString += "PC is not the same: got " + cpuRegisterState.PC + " expected " + pc.intValue() + "\n";
-        }
-        if (cpuRegisterState.S != s.intValue()) {
-            diffString += "S is not the same: got " + cpuRegisterState.S + " expected " + s.intValue() + "\n";
-        }
-        if (cpuRegisterState.A != a.intValue()) {
-            diffString += "A is not the same: got " + cpuRegisterState.A + " expected " + a.intValue() + "\n";
-        }
-        if (cpuRegisterState.Y != y.intValue()) {
-            diffString += "Y is not the same: got " + cpuRegisterState.Y + " expected " + y.intValue() + "\n";
+    // one line per difference, empty if the cpu matches final_vals
+    public static String checkCorrectFinalResult(CPU cpu, SingleStepState final_vals) {
+        SingleStepDiff diff = new SingleStepDiff();
+        if (diff.compare(cpu, final_vals)) {
+            return "";
         }
-        if (cpuRegisterState.X != x.intValue()) {
-            diffString += "X is not the same: got " + cpuRegisterState.X + " expected " + x.intValue() + "\n";
-        }
-        if (cpuRegisterState.P != p.intValue()) {
-            diffString += "P is not the same: got " + cpuRegisterState.P + " expected " + p.intValue() + "\n";
-        }
-
-        int numIntersect = 0;
-
-        boolean ram_diff = false;
-
-        for (i = 0; i < resultRam.size(); i++) {
-            for (int k = 0; k < ram_out.length; k++) {
-                if (resultRam.get(i)[0] == ram_out[k][0]) {
-                    if (resultRam.get(i)[1] != ram_out[k][1]) {
-                        ram_diff = true;
-                    }
-                    numIntersect++;
-                    break;
-                }
-            }
-        }
-
-        if (numIntersect != resultRam.size() || numIntersect != ram_out.length) {
-            ram_diff = true;
-        }
-
-        if (ram_diff) {
-            diffString += "There is a difference in the ram: \n";
-            diffString += "expected: \n";
-            for (i = 0; i < ram_out.length; i++) {
-                diffString += "    [" + ram_out[i][0] + ", " + ram_out[i][1] + "]\n";
-            }
-            diffString += "\ngotten: \n";
-            for (i = 0; i < resultRam.size(); i++) {
-                diffString += "    [" + resultRam.get(i)[0] + ", " + resultRam.get(i)[1] + "]\n";
-            }
-        }
-
-
-        return diffString;
+        StringBuilder builder = new StringBuilder();
+        diff.appendTo(builder);
+        return builder.toString();
     }
 }
@@ -0,0 +1,256 @@
+package nes_emulator;
+
+import nes_emulator.nes.components.bus.BusRecorder;
+import nes_emulator.nes.components.cpu.CPU;
+import nes_emulator.nes.components.cpu.OpcodeStatistics;
+import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.nes.diagnostics.DiagnosticLog;
+import nes_emulator.singlestep.OpcodeFingerprint;
+import nes_emulator.singlestep.OpcodeResult;
+import nes_emulator.singlestep.ResultCache;
+import nes_emulator.singlestep.SingleStepFailure;
+import nes_emulator.singlestep.SingleStepReport;
+import nes_emulator.singlestep.SingleStepSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// runs the opcode files on a ForkJoinPool, every worker thread has its own CPU
+// files with a known number of cases are split into chunks so one large file does not hold up the run
+// the output is collected per chunk and printed in opcode order, so it is the same for any number of workers
+// with a result cache, opcodes whose fingerprint has not changed since the last run are not run again
+public class ParallelTestRunner {
+    public static final int DEFAULT_CHUNK_SIZE = 2000;
+    // failing cases kept per opcode for the reports, the rest are only counted
+    public static final int MAX_REPORTED_FAILURES = 100;
+
+    private final String testDirectory;
+    private final int workers;
+    private final int chunkSize;
+    private ResultCache resultCache;
+    private boolean validateCycles;
+    private OpcodeStatistics opcodeStatistics;
+    private DiagnosticLog diagnosticLog;
+    private final List<SingleStepReport> reports = new ArrayList<>();
+
+    public ParallelTestRunner(String testDirectory, int workers) {
+        this(testDirectory, workers, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelTestRunner(String testDirectory, int workers, int chunkSize) {
+        if (workers < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("workers and chunk size must be positive");
+        }
+        this.testDirectory = testDirectory;
+        this.workers = workers;
+        this.chunkSize = chunkSize;
+    }
+
+    public void setResultCache(ResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
+    // records the bus of every worker and checks it against the cycles of each case
+    public void setValidateCycles(boolean validateCycles) {
+        this.validateCycles = validateCycles;
+    }
+
+    // every worker CPU counts its instructions into its own counters from the statistics
+    public void setOpcodeStatistics(OpcodeStatistics opcodeStatistics) {
+        this.opcodeStatistics = opcodeStatistics;
+    }
+
+    // every worker CPU posts its diagnostic events to its own ring from the log
+    public void setDiagnosticLog(DiagnosticLog diagnosticLog) {
+        this.diagnosticLog = diagnosticLog;
+    }
+
+    // the report is written as the opcodes finish and closed at the end of run()
+    public void addReport(SingleStepReport report) {
+        reports.add(report);
+    }
+
+    private static class ChunkResult {
+        int numCorrect;
+        int numTests;
+        boolean jammed;
+        long nanos;
+        String output;
+        List<SingleStepFailure> failures;
+    }
+
+    // returns {passed, total} per opcode in the same order, passed is -1 if the opcode is not implemented
+    public int[][] run(String[] opcodes, PrintStream out) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        ThreadLocal<CPU> cpus = ThreadLocal.withInitial(this::newCpu);
+        try {
+            String[] fingerprints = fingerprint(pool, opcodes);
+
+            int[][] results = new int[opcodes.length][];
+            List<List<ForkJoinTask<ChunkResult>>> tasks = new ArrayList<>();
+            for (int i = 0; i < opcodes.length; i++) {
+                String opcode = opcodes[i];
+                List<ForkJoinTask<ChunkResult>> chunks = new ArrayList<>();
+                tasks.add(chunks);
+                if (resultCache != null) {
+                    results[i] = resultCache.get(cacheKey(opcode), fingerprints[i]);
+                    if (results[i] != null) {
+                        continue;
+                    }
+                }
+                int numCases = countCases(opcode);
+                if (numCases < 0) {
+                    chunks.add(pool.submit(() -> runChunk(cpus.get(), opcode, 0, Integer.MAX_VALUE)));
+                } else {
+                    for (int start = 0; start < numCases || start == 0; start += chunkSize) {
+                        int chunkStart = start;
+                        chunks.add(pool.submit(() -> runChunk(cpus.get(), opcode, chunkStart, chunkSize)));
+                    }
+                }
+            }
+
+            for (int i = 0; i < opcodes.length; i++) {
+                if (results[i] != null) {
+                    out.println(results[i][0] + "/" + results[i][1] + " for opcode " + opcodes[i] + " (cached)");
+                    report(new OpcodeResult(opcodes[i], results[i][0], results[i][1], 0, true, Collections.emptyList()));
+                    continue;
+                }
+                out.println("Running tests for opcode " + opcodes[i]);
+                int numCorrect = 0;
+                int numTests = 0;
+                long nanos = 0;
+                List<SingleStepFailure> failures = new ArrayList<>();
+                for (ForkJoinTask<ChunkResult> task : tasks.get(i)) {
+                    ChunkResult chunk = join(task);
+                    out.print(chunk.output);
+                    numTests += chunk.numTests;
+                    nanos += chunk.nanos;
+                    for (SingleStepFailure failure : chunk.failures) {
+                        if (failures.size() < MAX_REPORTED_FAILURES) {
+                            failures.add(failure);
+                        }
+                    }
+                    if (chunk.jammed) {
+                        // same result as running the file on its own, which stops at the first jam
+                        numCorrect = -1;
+                        break;
+                    }
+                    numCorrect += chunk.numCorrect;
+                }
+                out.println(numCorrect + "/" + numTests + " for opcode " + opcodes[i]);
+                results[i] = new int[]{numCorrect, numTests};
+                report(new OpcodeResult(opcodes[i], numCorrect, numTests, nanos, false, failures));
+                if (resultCache != null) {
+                    resultCache.put(cacheKey(opcodes[i]), fingerprints[i], results[i]);
+                }
+            }
+            if (resultCache != null) {
+                try {
+                    resultCache.save();
+                } catch (IOException e) {
+                    // the results are still correct, the next run just cannot reuse them
+                    System.err.println("Could not save the result cache: " + e.getMessage());
+                }
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+            for (SingleStepReport report : reports) {
+                report.close();
+            }
+        }
+    }
+
+    private void report(OpcodeResult result) throws IOException {
+        for (SingleStepReport report : reports) {
+            report.add(result);
+        }
+    }
+
+    // the corpus files are hashed on the pool as well since together they are a few hundred megabytes
+    private String[] fingerprint(ForkJoinPool pool, String[] opcodes) throws IOException {
+        String[] fingerprints = new String[opcodes.length];
+        if (resultCache == null) {
+            return fingerprints;
+        }
+        OpcodeFingerprint fingerprint = new OpcodeFingerprint();
+        List<ForkJoinTask<String>> tasks = new ArrayList<>();
+        for (String opcode : opcodes) {
+            tasks.add(pool.submit(() -> {
+                try {
+                    return fingerprint.of(SingleStepSource.file(testDirectory, opcode));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        for (int i = 0; i < opcodes.length; i++) {
+            fingerprints[i] = join(tasks.get(i));
+        }
+        return fingerprints;
+    }
+
+    private CPU newCpu() {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        if (validateCycles) {
+            cpu.getMainBus().startRecording(new BusRecorder());
+        }
+        if (opcodeStatistics != null) {
+            cpu.setOpcodeCounters(opcodeStatistics.newCounters());
+        }
+        if (diagnosticLog != null) {
+            cpu.setDiagnostics(diagnosticLog.newRing());
+        }
+        return cpu;
+    }
+
+    // results with and without the cycle check are cached separately
+    private String cacheKey(String opcode) {
+        return validateCycles ? opcode + "-cycles" : opcode;
+    }
+
+    private int countCases(String opcode) throws IOException {
+        try (SingleStepSource source = SingleStepSource.open(testDirectory, opcode)) {
+            return source.getNumCases();
+        }
+    }
+
+    private ChunkResult runChunk(CPU cpu, String opcode, int start, int length) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (SingleStepSource source = SingleStepSource.open(testDirectory, opcode);
+             PrintStream out = new PrintStream(output)) {
+            source.skip(start);
+            List<SingleStepFailure> failures = new ArrayList<>();
+            long startTime = System.nanoTime();
+            int[] result = App.runTests(cpu, source, length, out, failures, reports.isEmpty() ? 0 : MAX_REPORTED_FAILURES);
+            long nanos = System.nanoTime() - startTime;
+            out.flush();
+
+            ChunkResult chunk = new ChunkResult();
+            chunk.nanos = nanos;
+            chunk.failures = failures;
+            chunk.jammed = result[0] == -1;
+            chunk.numCorrect = result[0];
+            chunk.numTests = result[1];
+            chunk.output = output.toString();
+            return chunk;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> T join(ForkJoinTask<T> task) throws IOException {
+        try {
+            return task.join();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package nes_emulator.nes.components.bus;
+
+// anything that can be mapped into the main bus address space
+// addresses are passed unchanged, so a device decides for itself how it mirrors them
+public interface BusDevice {
+    int readByte(int addr);
+
+    void writeByte(int addr, int val);
+}
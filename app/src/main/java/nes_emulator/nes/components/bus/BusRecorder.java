@@ -0,0 +1,54 @@
+package nes_emulator.nes.components.bus;
+
+import java.util.Arrays;
+
+// the bus accesses made while recording, in order, see MainBus.startRecording
+// the arrays are allocated once and reused after clear(), they only grow if an instruction makes more accesses
+public class BusRecorder {
+    private int[] addresses;
+    private int[] values;
+    private boolean[] writes;
+    private int size;
+
+    public BusRecorder() {
+        this(16);
+    }
+
+    public BusRecorder(int capacity) {
+        addresses = new int[capacity];
+        values = new int[capacity];
+        writes = new boolean[capacity];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    void record(int address, int value, boolean write) {
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+            writes = Arrays.copyOf(writes, size * 2);
+        }
+        addresses[size] = address;
+        values[size] = value & 0xFF;
+        writes[size] = write;
+        size++;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getAddress(int i) {
+        return addresses[i];
+    }
+
+    public int getValue(int i) {
+        return values[i];
+    }
+
+    public boolean isWrite(int i) {
+        return writes[i];
+    }
+}
@@ -2,58 +2,115 @@ package nes_emulator.nes.components.bus;
 
 import nes_emulator.nes.components.cpu.CPU;
 import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.nes.components.memory.Memory;
+import nes_emulator.nes.components.memory.PRGRAM;
+import nes_emulator.nes.components.memory.PRGROM;
 
 public class MainBus {
+    private static final int PAGE_SHIFT = 8;
+    private static final int NUM_PAGES = 0x100;
+
     private CPU cpu;
 
     // Memory
     private CPUMemory cpuMemory;
 
+    // the device mapped to each 256 byte page
+    private final BusDevice[] devices = new BusDevice[NUM_PAGES];
+    // what an access to each page goes to, so resolving an address is a single array read
+    // this is the mapped device, or a RecordingDevice in front of it while recording
+    private final BusDevice[] pages = new BusDevice[NUM_PAGES];
+    // pages backed by plain memory, read through the final Memory.readByte instead of the BusDevice interface
+    // empty while recording so every access goes through the RecordingDevice, which keeps readByte and
+    // writeByte free of any recording checks
+    private final Memory[] memoryPages = new Memory[NUM_PAGES];
+
+    private BusRecorder recorder;
+
     public MainBus(CPU cpu) {
         this.cpu = cpu;
         this.cpuMemory = cpu.getCpuMemory();
+
+        // until a cartridge is loaded the whole address space is plain memory
+        mapDevice(0x0000, 0xFFFF, cpuMemory);
+    }
+
+    // maps every page from startAddr to endAddr to the device, both addresses must be page aligned
+    public void mapDevice(int startAddr, int endAddr, BusDevice device) {
+        for (int page = startAddr >> PAGE_SHIFT; page <= endAddr >> PAGE_SHIFT; page++) {
+            devices[page] = device;
+            updatePage(page);
+        }
+    }
+
+    private void updatePage(int page) {
+        BusDevice device = devices[page];
+        if (recorder != null) {
+            pages[page] = new RecordingDevice(device, recorder);
+            memoryPages[page] = null;
+        } else {
+            pages[page] = device;
+            memoryPages[page] = device instanceof Memory ? (Memory) device : null;
+        }
+    }
+
+    // every access from now on is added to the recorder, until stopRecording()
+    public void startRecording(BusRecorder recorder) {
+        this.recorder = recorder;
+        for (int page = 0; page < NUM_PAGES; page++) {
+            updatePage(page);
+        }
+    }
+
+    public void stopRecording() {
+        recorder = null;
+        for (int page = 0; page < NUM_PAGES; page++) {
+            updatePage(page);
+        }
+    }
+
+    // the recorder in use, or null when not recording
+    public BusRecorder getRecorder() {
+        return recorder;
+    }
+
+    // the memory behind the page when accesses to it can go straight to memory, null for devices and while recording
+    public Memory getMemoryPage(int page) {
+        return memoryPages[page];
+    }
+
+    // builds the page table for a cartridge: internal ram, PPU registers, APU and I/O registers and the mapper
+    public void loadCartridgeLayout(BusDevice ppuRegisters, BusDevice apuIoRegisters, BusDevice mapper) {
+        mapDevice(0x0000, 0x1FFF, cpuMemory);
+        mapDevice(0x2000, 0x3FFF, ppuRegisters);
+        mapDevice(0x4000, 0x40FF, new RegisterPage(apuIoRegisters, mapper));
+        mapDevice(0x4100, 0xFFFF, mapper);
+    }
+
+    // maps the cartridge memory directly for boards without bank switching
+    public void mapPRG(PRGRAM prgRam, PRGROM prgRom) {
+        mapDevice(0x6000, 0x7FFF, prgRam);
+        mapDevice(0x8000, 0xFFFF, prgRom);
     }
 
     public int readByte(int addr) {
-        int result = cpuMemory.readByte(addr);
-        return result;
-    }
-
-//    public int readByte(int addr) {
-//        int result = 0;
-//        if(addr < 0x2000) {
-//            result = cpuMemory.readByte(addr);
-//        } else if(addr < 0x4000) {
-//            // ppu registers are read
-//        } else if (addr <  0x4018) {
-//            // apu registers are read
-//            // i/o registers are read
-//        } else if (addr < 0x4020) {
-//            // CPU test mode
-//        } else {
-//            // mapper read memory
-//            result = mapper.readMainBusByte((addr - 0x4020));
-//        }
-//        return result;
-//    }
+        addr &= 0xFFFF;
+        int page = addr >> PAGE_SHIFT;
+        Memory memory = memoryPages[page];
+        if (memory != null) {
+            return memory.readByte(addr);
+        }
+        return pages[page].readByte(addr);
+    }
 
     public void writeByte(int addr, int val) {
-        cpuMemory.writeByte(addr, val);
-    }
-
-//    public void writeByte(int addr, int val) {
-//        if(addr < 0x2000) {
-//            cpuMemory.writeByte(addr, val);
-//        } else if(addr < 0x4000) {
-//            // ppu registers are written to
-//        } else if (addr < 0x4018) {
-//            // apu registers are written to
-//            // i/o registers are written to
-//        } else if (addr < 0x4020) {
-//            // CPU test mode
-//        } else {
-//            // mapper write memory
-//            mapper.writeMainBusByte(addr - 0x4020, val);
-//        }
-//    }
+        addr &= 0xFFFF;
+        int page = addr >> PAGE_SHIFT;
+        Memory memory = memoryPages[page];
+        if (memory != null) {
+            memory.writeByte(addr, val);
+            return;
+        }
+        pages[page].writeByte(addr, val);
+    }
 }
@@ -0,0 +1,25 @@
+package nes_emulator.nes.components.bus;
+
+// put in front of every page while MainBus is recording
+class RecordingDevice implements BusDevice {
+    private final BusDevice device;
+    private final BusRecorder recorder;
+
+    RecordingDevice(BusDevice device, BusRecorder recorder) {
+        this.device = device;
+        this.recorder = recorder;
+    }
+
+    @Override
+    public int readByte(int addr) {
+        int val = device.readByte(addr);
+        recorder.record(addr, val, false);
+        return val;
+    }
+
+    @Override
+    public void writeByte(int addr, int val) {
+        recorder.record(addr, val, true);
+        device.writeByte(addr, val);
+    }
+}
@@ -0,0 +1,32 @@
+package nes_emulator.nes.components.bus;
+
+// the $4000-$40FF page is shared by the APU and I/O registers, the CPU test mode registers and the cartridge
+class RegisterPage implements BusDevice {
+    private final BusDevice apuIoRegisters;
+    private final BusDevice mapper;
+
+    RegisterPage(BusDevice apuIoRegisters, BusDevice mapper) {
+        this.apuIoRegisters = apuIoRegisters;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public int readByte(int addr) {
+        if (addr < 0x4018) {
+            return apuIoRegisters.readByte(addr);
+        } else if (addr < 0x4020) {
+            // CPU test mode
+            return 0;
+        }
+        return mapper.readByte(addr);
+    }
+
+    @Override
+    public void writeByte(int addr, int val) {
+        if (addr < 0x4018) {
+            apuIoRegisters.writeByte(addr, val);
+        } else if (addr >= 0x4020) {
+            mapper.writeByte(addr, val);
+        }
+    }
+}
@@ -0,0 +1,715 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.bus.MainBus;
+import nes_emulator.nes.components.cpu.CPUInstruction.AddressingMode;
+import nes_emulator.nes.components.memory.Memory;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+
+// translates a straight run of instructions into a hidden class implementing CompiledBlock.Code
+// the operands are constants in the generated code, the registers are read and written in CPURegisterState directly
+// and memory is read and written through the Memory the bus maps at the page, e.g. internal ram, PRG-RAM or PRG-ROM,
+// so an instruction costs no dispatch or decode
+// every data access first looks up the Memory of its page and if the page is not plain memory leaves the block just
+// before the instruction, which the interpreter then runs with the real bus
+// the code itself can be in any plain memory, a block only covers code in a single Memory
+// the arithmetic is the same CPUInstructionList code the interpreter uses
+final class BlockCompiler implements Opcodes {
+    static final int MAX_INSTRUCTIONS = 64;
+    private static final int STACK_PAGE = 0x01;
+
+    private static final String CLASS_NAME = "nes_emulator/nes/components/cpu/RecompiledBlock";
+    private static final String CODE = "nes_emulator/nes/components/cpu/CompiledBlock$Code";
+    private static final String CPU_CLASS = "nes_emulator/nes/components/cpu/CPU";
+    private static final String REGISTERS = "nes_emulator/nes/components/cpu/CPURegisterState";
+    private static final String LIST = "nes_emulator/nes/components/cpu/CPUInstructionList";
+    private static final String STACK = "nes_emulator/nes/components/cpu/CPUStack";
+    private static final String MEMORY = "nes_emulator/nes/components/memory/Memory";
+    private static final String BUS = "nes_emulator/nes/components/bus/MainBus";
+    private static final String EXECUTE_DESCRIPTOR = "(L" + CPU_CLASS + ";L" + REGISTERS + ";L" + BUS + ";I)I";
+    private static final String HANDLER_DESCRIPTOR = "(L" + CPU_CLASS + ";)V";
+
+    // locals of the generated execute method
+    private static final int CPU_LOCAL = 1;
+    private static final int REGISTERS_LOCAL = 2;
+    private static final int BUS_LOCAL = 3;
+    private static final int BUDGET_LOCAL = 4;
+    private static final int CYCLES_LOCAL = 5; // page crossing penalties and finished loop passes
+    private static final int RAW_ADDRESS_LOCAL = 6; // indexed address before wrapping, for the page crossing check
+    private static final int VALUE_LOCAL = 7;
+    private static final int ADDRESS_LOCAL = 8;
+    private static final int MEMORY_LOCAL = 9; // the Memory of the page last checked, where the access goes
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    // how an instruction fits in a block
+    private static final int UNSUPPORTED = 0;
+    private static final int CONTINUES = 1;
+    private static final int ENDS_BLOCK = 2; // control flow, and flag changes an interrupt check would need to see
+
+    private static final class Instruction {
+        int pc;
+        int nextPc;
+        CPUOpcodeEntry entry;
+        int operand; // the operand byte or little endian word
+        int cyclesBefore; // base cycles of the instructions before it in the block
+    }
+
+    private MethodVisitor mv;
+    private boolean sideExitUsed;
+    private List<Instruction> instructions;
+    private int start;
+    private int length;
+    private Memory memory; // the memory holding the code
+    private int memoryMask;
+    private Memory stackMemory; // the memory mapped at the stack page, if any
+    private int maxCycles;
+
+    // compiles the block starting at start, or returns null if its first instruction can not be compiled
+    CompiledBlock compile(CPU cpu, int start) throws ReflectiveOperationException {
+        MainBus mainBus = cpu.getMainBus();
+        memory = mainBus.getMemoryPage(start >> 8);
+        if (memory == null) {
+            return null;
+        }
+        this.start = start;
+        this.memoryMask = memory.getMemorySize() - 1;
+        this.stackMemory = mainBus.getMemoryPage(STACK_PAGE);
+        instructions = decode(mainBus, start);
+        if (instructions.isEmpty()) {
+            return null;
+        }
+        Instruction last = instructions.get(instructions.size() - 1);
+        length = last.nextPc - start;
+
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) memory.readByte(start + i);
+        }
+        int firstPage = start >> 8;
+        int lastPage = (start + length - 1) >> 8;
+        int[] pages = new int[lastPage - firstPage + 1];
+        int[] generations = new int[pages.length];
+        memory.trackPageWrites();
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = firstPage + i;
+            generations[i] = memory.getPageGeneration(pages[i] << 8);
+        }
+
+        maxCycles = 0;
+        for (Instruction instruction : instructions) {
+            maxCycles += maxCycles(instruction.entry);
+        }
+        byte[] classFile = generate();
+        Class<?> blockClass = LOOKUP.defineHiddenClass(classFile, true).lookupClass();
+        CompiledBlock.Code code = (CompiledBlock.Code) blockClass.getDeclaredConstructor().newInstance();
+        return new CompiledBlock(start, instructions.size(), maxCycles, bytes, memory, pages, generations, code);
+    }
+
+    private List<Instruction> decode(MainBus mainBus, int start) {
+        List<Instruction> decoded = new ArrayList<>();
+        int pc = start;
+        int cycles = 0;
+        while (decoded.size() < MAX_INSTRUCTIONS && isCodeByte(mainBus, pc)) {
+            CPUOpcodeEntry entry = CPUOpcodeTable.get(memory.readByte(pc));
+            int kind = kind(entry);
+            int nextPc = pc + entry.numBytes;
+            // an instruction ending at $FFFF is left to the interpreter, which wraps the PC
+            if (kind == UNSUPPORTED || nextPc > 0xFFFF || !isCodeByte(mainBus, nextPc - 1)) {
+                break;
+            }
+            Instruction instruction = new Instruction();
+            instruction.pc = pc;
+            instruction.nextPc = nextPc;
+            instruction.entry = entry;
+            instruction.cyclesBefore = cycles;
+            if (entry.numBytes == 2) {
+                instruction.operand = memory.readByte(pc + 1);
+            } else if (entry.numBytes == 3) {
+                instruction.operand = memory.readByte(pc + 1) | memory.readByte(pc + 2) << 8;
+            }
+            decoded.add(instruction);
+            cycles += entry.numCycles;
+            pc = nextPc;
+            if (kind == ENDS_BLOCK) {
+                break;
+            }
+        }
+
+        // a store to a fixed address inside the block ends it, so the rest of the block is decoded again
+        for (int i = 0; i < decoded.size(); i++) {
+            Instruction instruction = decoded.get(i);
+            if (writesMemory(instruction.entry) && isFixedAddress(instruction.entry.addressingMode)
+                    && isInside(instruction.operand, start, pc - start)) {
+                return new ArrayList<>(decoded.subList(0, i + 1));
+            }
+        }
+        return decoded;
+    }
+
+    // code has to be in the block's memory, and not in the stack page where pushes could change it in the middle of
+    // a block, including a mirror of the stack page in that memory
+    private boolean isCodeByte(MainBus mainBus, int addr) {
+        if (addr > 0xFFFF || mainBus.getMemoryPage(addr >> 8) != memory) {
+            return false;
+        }
+        return memory != stackMemory || ((addr & memoryMask) >> 8) != (((STACK_PAGE << 8) & memoryMask) >> 8);
+    }
+
+    private boolean isInside(int addr, int start, int length) {
+        return Integer.compareUnsigned((addr & memoryMask) - (start & memoryMask), length) < 0;
+    }
+
+    private static int kind(CPUOpcodeEntry entry) {
+        switch (entry.opcodeAssembly) {
+            case "LDA": case "LDX": case "LDY": case "STA": case "STX": case "STY":
+            case "ADC": case "SBC": case "AND": case "ORA": case "EOR": case "BIT":
+            case "CMP": case "CPX": case "CPY": case "INC": case "DEC":
+            case "INX": case "INY": case "DEX": case "DEY":
+            case "ASL": case "LSR": case "ROL": case "ROR":
+            case "TAX": case "TAY": case "TXA": case "TYA": case "TSX": case "TXS":
+            case "CLC": case "SEC": case "CLV": case "CLD": case "SED": case "NOP":
+            case "PHA": case "PHP": case "PLA":
+                return CONTINUES;
+            case "BCC": case "BCS": case "BEQ": case "BNE": case "BMI": case "BPL": case "BVC": case "BVS":
+            case "JSR": case "RTS": case "PLP": case "CLI": case "SEI":
+                return ENDS_BLOCK;
+            case "JMP":
+                return entry.addressingMode == AddressingMode.ABSOLUTE ? ENDS_BLOCK : UNSUPPORTED;
+            default:
+                // BRK and RTI are interrupt boundaries and JAM stops the cpu, the interpreter runs those
+                return UNSUPPORTED;
+        }
+    }
+
+    private static boolean writesMemory(CPUOpcodeEntry entry) {
+        switch (entry.opcodeAssembly) {
+            case "STA": case "STX": case "STY": case "INC": case "DEC":
+                return true;
+            case "ASL": case "LSR": case "ROL": case "ROR":
+                return entry.addressingMode != AddressingMode.ACCUMULATOR;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isFixedAddress(AddressingMode addressingMode) {
+        return addressingMode == AddressingMode.ZEROPAGE || addressingMode == AddressingMode.ABSOLUTE;
+    }
+
+    // the interpreter adds a cycle for every indexed access that crosses a page, and up to 2 for a taken branch
+    private static boolean hasPageCrossPenalty(AddressingMode addressingMode) {
+        return addressingMode == AddressingMode.INDEXED_ABSOLUTE_X || addressingMode == AddressingMode.INDEXED_ABSOLUTE_Y
+                || addressingMode == AddressingMode.POST_INDEXED_INDIRECT;
+    }
+
+    private static int maxCycles(CPUOpcodeEntry entry) {
+        return entry.numCycles + (hasPageCrossPenalty(entry.addressingMode) ? 1 : 0) + (entry.isBranch() ? 2 : 0);
+    }
+
+    private byte[] generate() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        cw.visit(V17, ACC_FINAL | ACC_SUPER, CLASS_NAME, null, "java/lang/Object", new String[]{CODE});
+
+        mv = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(ACC_PUBLIC, "execute", EXECUTE_DESCRIPTOR, null, null);
+        mv.visitCode();
+        mv.visitInsn(ICONST_0);
+        mv.visitVarInsn(ISTORE, CYCLES_LOCAL);
+        Label blockStart = new Label();
+        mv.visitLabel(blockStart);
+
+        boolean exited = false;
+        for (Instruction instruction : instructions) {
+            Label sideExit = new Label();
+            sideExitUsed = false;
+            exited = generate(instruction, sideExit, blockStart);
+            if (sideExitUsed) {
+                Label next = new Label();
+                if (!exited) {
+                    mv.visitJumpInsn(GOTO, next);
+                }
+                mv.visitLabel(sideExit);
+                setPC(instruction.pc);
+                loadCycles(instruction.cyclesBefore);
+                mv.visitInsn(ICONST_M1);
+                mv.visitInsn(IXOR);
+                mv.visitInsn(IRETURN);
+                mv.visitLabel(next);
+            }
+        }
+        if (!exited) {
+            // the block was cut short, the next instruction is run by the interpreter or another block
+            Instruction last = instructions.get(instructions.size() - 1);
+            exit(last.nextPc, last.cyclesBefore + last.entry.numCycles);
+        }
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    // returns true if the instruction always leaves the block
+    private boolean generate(Instruction instruction, Label sideExit, Label blockStart) {
+        CPUOpcodeEntry entry = instruction.entry;
+        String op = entry.opcodeAssembly;
+        int cyclesAfter = instruction.cyclesBefore + entry.numCycles;
+        if (entry.isBranch()) {
+            generateBranch(instruction, blockStart);
+            return true;
+        }
+        switch (op) {
+            case "JMP":
+                exitOrLoop(instruction.operand, cyclesAfter, blockStart);
+                return true;
+            case "JSR":
+                // pushes the address of the last byte of the JSR like the interpreter
+                int pushed = instruction.pc + 2;
+                pushToStack((pushed >> 8) & 0xFF);
+                pushToStack(pushed & 0xFF);
+                exit(instruction.operand, cyclesAfter);
+                return true;
+            case "RTS":
+                callHandler(op);
+                mv.visitVarInsn(ILOAD, CYCLES_LOCAL);
+                pushInt(cyclesAfter);
+                mv.visitInsn(IADD);
+                mv.visitInsn(IRETURN);
+                return true;
+            case "PHA": case "PHP": case "PLA":
+                callHandler(op);
+                return false;
+            case "PLP":
+                callHandler(op);
+                exit(instruction.nextPc, cyclesAfter);
+                return true;
+            case "CLI": case "SEI":
+                setFlag("setStatusI", op.equals("SEI") ? 1 : 0);
+                exit(instruction.nextPc, cyclesAfter);
+                return true;
+            case "CLC": case "SEC":
+                setFlag("setStatusC", op.equals("SEC") ? 1 : 0);
+                return false;
+            case "CLD": case "SED":
+                setFlag("setStatusD", op.equals("SED") ? 1 : 0);
+                return false;
+            case "CLV":
+                setFlag("setStatusV", 0);
+                return false;
+            case "NOP":
+                return false;
+            case "INX": case "DEX":
+                incrementRegister("X", op.equals("INX") ? 1 : -1);
+                return false;
+            case "INY": case "DEY":
+                incrementRegister("Y", op.equals("INY") ? 1 : -1);
+                return false;
+            case "TAX": transfer("A", "X", true); return false;
+            case "TAY": transfer("A", "Y", true); return false;
+            case "TXA": transfer("X", "A", true); return false;
+            case "TYA": transfer("Y", "A", true); return false;
+            case "TSX": transfer("S", "X", true); return false;
+            case "TXS": transfer("X", "S", false); return false;
+            default:
+                break;
+        }
+
+        // everything below works on a value or an address
+        AddressingMode addressingMode = entry.addressingMode;
+        boolean accumulator = addressingMode == AddressingMode.ACCUMULATOR;
+        if (addressingMode != AddressingMode.IMMEDIATE && !accumulator) {
+            generateAddress(instruction, sideExit);
+        }
+        switch (op) {
+            case "LDA": case "LDX": case "LDY":
+                loadValue(instruction);
+                mv.visitVarInsn(ISTORE, VALUE_LOCAL);
+                storeRegisterWithFlags(op.substring(2));
+                return false;
+            case "STA": case "STX": case "STY":
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                mv.visitVarInsn(ILOAD, ADDRESS_LOCAL);
+                loadRegister(op.substring(2));
+                writeByte();
+                return checkSelfModifying(instruction);
+            case "AND": case "ORA": case "EOR":
+                loadRegister("A");
+                loadValue(instruction);
+                mv.visitInsn(op.equals("AND") ? IAND : op.equals("ORA") ? IOR : IXOR);
+                mv.visitVarInsn(ISTORE, VALUE_LOCAL);
+                storeRegisterWithFlags("A");
+                return false;
+            case "ADC": case "SBC": case "BIT":
+                mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+                loadValue(instruction);
+                callList(op.equals("ADC") ? "add" : op.equals("SBC") ? "subtract" : "bitTest", "(L" + REGISTERS + ";I)V");
+                return false;
+            case "CMP": case "CPX": case "CPY":
+                mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+                loadRegister(op.equals("CMP") ? "A" : op.substring(2));
+                loadValue(instruction);
+                callList("compare", "(L" + REGISTERS + ";II)V");
+                return false;
+            case "INC": case "DEC":
+                loadValue(instruction);
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(op.equals("INC") ? IADD : ISUB);
+                pushInt(0xFF);
+                mv.visitInsn(IAND);
+                mv.visitVarInsn(ISTORE, VALUE_LOCAL);
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                mv.visitVarInsn(ILOAD, ADDRESS_LOCAL);
+                mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+                writeByte();
+                mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+                mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+                mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "setStatusNZ", "(I)V", false);
+                return checkSelfModifying(instruction);
+            case "ASL": case "LSR": case "ROL": case "ROR":
+                String shift = op.equals("ASL") ? "shiftLeft" : op.equals("LSR") ? "shiftRight"
+                        : op.equals("ROL") ? "rotateLeft" : "rotateRight";
+                if (accumulator) {
+                    mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+                    mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+                    loadRegister("A");
+                    callList(shift, "(L" + REGISTERS + ";I)I");
+                    mv.visitFieldInsn(PUTFIELD, REGISTERS, "A", "I");
+                    return false;
+                }
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                mv.visitVarInsn(ILOAD, ADDRESS_LOCAL);
+                mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+                loadValue(instruction);
+                callList(shift, "(L" + REGISTERS + ";I)I");
+                writeByte();
+                return checkSelfModifying(instruction);
+            default:
+                throw new IllegalStateException("no code for " + entry);
+        }
+    }
+
+    // leaves the effective address in ADDRESS_LOCAL and the Memory of its page in MEMORY_LOCAL,
+    // jumping to sideExit if it or a pointer is not in plain memory
+    // page crossing penalties are only added once every check has passed, so a side exit returns the cycles so far
+    private void generateAddress(Instruction instruction, Label sideExit) {
+        int operand = instruction.operand;
+        switch (instruction.entry.addressingMode) {
+            case ZEROPAGE:
+            case ABSOLUTE:
+                pushInt(operand);
+                mv.visitVarInsn(ISTORE, ADDRESS_LOCAL);
+                checkFixedPage(operand >> 8, sideExit);
+                break;
+            case INDEXED_ZEROPAGE_X:
+            case INDEXED_ZEROPAGE_Y:
+                pushInt(operand);
+                loadRegister(instruction.entry.addressingMode == AddressingMode.INDEXED_ZEROPAGE_X ? "X" : "Y");
+                mv.visitInsn(IADD);
+                pushInt(0xFF);
+                mv.visitInsn(IAND);
+                mv.visitVarInsn(ISTORE, ADDRESS_LOCAL);
+                checkFixedPage(0, sideExit);
+                break;
+            case INDEXED_ABSOLUTE_X:
+            case INDEXED_ABSOLUTE_Y:
+                pushInt(operand);
+                loadRegister(instruction.entry.addressingMode == AddressingMode.INDEXED_ABSOLUTE_X ? "X" : "Y");
+                mv.visitInsn(IADD);
+                mv.visitVarInsn(ISTORE, RAW_ADDRESS_LOCAL);
+                wrapRawAddress();
+                checkAddressPage(sideExit);
+                addPageCrossPenalty(() -> pushInt(operand & 0xFF00));
+                break;
+            case PRE_INDEXED_INDIRECT:
+                checkFixedPage(0, sideExit);
+                pushInt(operand);
+                loadRegister("X");
+                mv.visitInsn(IADD);
+                pushInt(0xFF);
+                mv.visitInsn(IAND);
+                mv.visitVarInsn(ISTORE, RAW_ADDRESS_LOCAL);
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                mv.visitVarInsn(ILOAD, RAW_ADDRESS_LOCAL);
+                readByte();
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                mv.visitVarInsn(ILOAD, RAW_ADDRESS_LOCAL);
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(IADD);
+                pushInt(0xFF);
+                mv.visitInsn(IAND);
+                readByte();
+                pushInt(8);
+                mv.visitInsn(ISHL);
+                mv.visitInsn(IADD);
+                mv.visitVarInsn(ISTORE, ADDRESS_LOCAL);
+                checkAddressPage(sideExit);
+                break;
+            case POST_INDEXED_INDIRECT:
+                checkFixedPage(0, sideExit);
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                pushInt(operand);
+                readByte();
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                pushInt((operand + 1) & 0xFF);
+                readByte();
+                pushInt(8);
+                mv.visitInsn(ISHL);
+                mv.visitInsn(IADD);
+                mv.visitVarInsn(ISTORE, VALUE_LOCAL); // the pointer, before Y is added
+                mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+                loadRegister("Y");
+                mv.visitInsn(IADD);
+                mv.visitVarInsn(ISTORE, RAW_ADDRESS_LOCAL);
+                wrapRawAddress();
+                checkAddressPage(sideExit);
+                addPageCrossPenalty(() -> {
+                    mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+                    pushInt(0xFF00);
+                    mv.visitInsn(IAND);
+                });
+                break;
+            default:
+                throw new IllegalStateException("no address for " + instruction.entry);
+        }
+    }
+
+    private void wrapRawAddress() {
+        mv.visitVarInsn(ILOAD, RAW_ADDRESS_LOCAL);
+        pushInt(0xFFFF);
+        mv.visitInsn(IAND);
+        mv.visitVarInsn(ISTORE, ADDRESS_LOCAL);
+    }
+
+    // one more cycle if the high byte of the raw address differs from the one basePage pushes
+    private void addPageCrossPenalty(Runnable basePage) {
+        Label samePage = new Label();
+        mv.visitVarInsn(ILOAD, RAW_ADDRESS_LOCAL);
+        pushInt(0xFF00);
+        mv.visitInsn(IAND);
+        basePage.run();
+        mv.visitJumpInsn(IF_ICMPEQ, samePage);
+        mv.visitIincInsn(CYCLES_LOCAL, 1);
+        mv.visitLabel(samePage);
+    }
+
+    private void checkFixedPage(int page, Label sideExit) {
+        mv.visitVarInsn(ALOAD, BUS_LOCAL);
+        pushInt(page);
+        checkPage(sideExit);
+    }
+
+    private void checkAddressPage(Label sideExit) {
+        mv.visitVarInsn(ALOAD, BUS_LOCAL);
+        mv.visitVarInsn(ILOAD, ADDRESS_LOCAL);
+        pushInt(8);
+        mv.visitInsn(ISHR);
+        checkPage(sideExit);
+    }
+
+    // keeps the Memory of the page in MEMORY_LOCAL for the accesses that follow
+    private void checkPage(Label sideExit) {
+        mv.visitMethodInsn(INVOKEVIRTUAL, BUS, "getMemoryPage", "(I)L" + MEMORY + ";", false);
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ASTORE, MEMORY_LOCAL);
+        mv.visitJumpInsn(IFNULL, sideExit);
+        sideExitUsed = true;
+    }
+
+    // pushes the value the instruction works on
+    private void loadValue(Instruction instruction) {
+        switch (instruction.entry.addressingMode) {
+            case IMMEDIATE:
+                pushInt(instruction.operand);
+                break;
+            case ACCUMULATOR:
+                loadRegister("A");
+                break;
+            default:
+                mv.visitVarInsn(ALOAD, MEMORY_LOCAL);
+                mv.visitVarInsn(ILOAD, ADDRESS_LOCAL);
+                readByte();
+                break;
+        }
+    }
+
+    // a store with a computed address into the block leaves it right after the store,
+    // the next run of the block sees the new page generation and checks its bytes
+    private boolean checkSelfModifying(Instruction instruction) {
+        if (isFixedAddress(instruction.entry.addressingMode)) {
+            // decode() already ended the block here if the address is inside it
+            if (isInside(instruction.operand, start, length)) {
+                exit(instruction.nextPc, instruction.cyclesBefore + instruction.entry.numCycles);
+                return true;
+            }
+            return false;
+        }
+        Label outside = new Label();
+        mv.visitVarInsn(ILOAD, ADDRESS_LOCAL);
+        pushInt(memoryMask);
+        mv.visitInsn(IAND);
+        pushInt(start & memoryMask);
+        mv.visitInsn(ISUB);
+        pushInt(length);
+        mv.visitMethodInsn(INVOKESTATIC, "java/lang/Integer", "compareUnsigned", "(II)I", false);
+        mv.visitJumpInsn(IFGE, outside);
+        exit(instruction.nextPc, instruction.cyclesBefore + instruction.entry.numCycles);
+        mv.visitLabel(outside);
+        return false;
+    }
+
+    private void generateBranch(Instruction instruction, Label blockStart) {
+        CPUOpcodeEntry entry = instruction.entry;
+        int target = (instruction.pc + (byte) instruction.operand + 2) & 0xFFFF;
+        Label notTaken = new Label();
+        mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+        mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, branchFlagGetter(entry.branchFlagBit), "()I", false);
+        pushInt(entry.branchFlagValue);
+        mv.visitJumpInsn(IF_ICMPNE, notTaken);
+        int takenCycles = entry.numCycles + ((target & 0xFF00) == (instruction.pc & 0xFF00) ? 1 : 2);
+        exitOrLoop(target, instruction.cyclesBefore + takenCycles, blockStart);
+        mv.visitLabel(notTaken);
+        exit((instruction.pc + 2) & 0xFFFF, instruction.cyclesBefore + entry.numCycles);
+    }
+
+    private static String branchFlagGetter(int flagBit) {
+        switch (flagBit) {
+            case 0: return "getStatusC";
+            case 1: return "getStatusZ";
+            case 6: return "getStatusV";
+            case 7: return "getStatusN";
+            default: throw new IllegalArgumentException("no branch on bit " + flagBit);
+        }
+    }
+
+    // a jump back to the start of the block runs it again while another pass fits in the budget
+    private void exitOrLoop(int target, int cycles, Label blockStart) {
+        if (target != start) {
+            exit(target, cycles);
+            return;
+        }
+        mv.visitIincInsn(CYCLES_LOCAL, cycles);
+        Label leave = new Label();
+        mv.visitVarInsn(ILOAD, CYCLES_LOCAL);
+        pushInt(maxCycles);
+        mv.visitInsn(IADD);
+        mv.visitVarInsn(ILOAD, BUDGET_LOCAL);
+        mv.visitJumpInsn(IF_ICMPGT, leave);
+        mv.visitJumpInsn(GOTO, blockStart);
+        mv.visitLabel(leave);
+        exit(target, 0);
+    }
+
+    private void exit(int pc, int cycles) {
+        setPC(pc);
+        loadCycles(cycles);
+        mv.visitInsn(IRETURN);
+    }
+
+    private void setPC(int pc) {
+        mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+        pushInt(pc);
+        mv.visitFieldInsn(PUTFIELD, REGISTERS, "PC", "I");
+    }
+
+    private void loadCycles(int cycles) {
+        mv.visitVarInsn(ILOAD, CYCLES_LOCAL);
+        if (cycles != 0) {
+            pushInt(cycles);
+            mv.visitInsn(IADD);
+        }
+    }
+
+    private void loadRegister(String register) {
+        mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+        mv.visitFieldInsn(GETFIELD, REGISTERS, register, "I");
+    }
+
+    // stores VALUE_LOCAL in the register and sets N and Z from it
+    private void storeRegisterWithFlags(String register) {
+        mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+        mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+        mv.visitFieldInsn(PUTFIELD, REGISTERS, register, "I");
+        mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+        mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+        mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, "setStatusNZ", "(I)V", false);
+    }
+
+    private void incrementRegister(String register, int delta) {
+        loadRegister(register);
+        pushInt(delta);
+        mv.visitInsn(IADD);
+        pushInt(0xFF);
+        mv.visitInsn(IAND);
+        mv.visitVarInsn(ISTORE, VALUE_LOCAL);
+        storeRegisterWithFlags(register);
+    }
+
+    private void transfer(String from, String to, boolean setsFlags) {
+        loadRegister(from);
+        mv.visitVarInsn(ISTORE, VALUE_LOCAL);
+        if (setsFlags) {
+            storeRegisterWithFlags(to);
+        } else {
+            mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+            mv.visitVarInsn(ILOAD, VALUE_LOCAL);
+            mv.visitFieldInsn(PUTFIELD, REGISTERS, to, "I");
+        }
+    }
+
+    private void setFlag(String setter, int value) {
+        mv.visitVarInsn(ALOAD, REGISTERS_LOCAL);
+        pushInt(value);
+        mv.visitMethodInsn(INVOKEVIRTUAL, REGISTERS, setter, "(I)V", false);
+    }
+
+    private void pushToStack(int value) {
+        mv.visitVarInsn(ALOAD, CPU_LOCAL);
+        mv.visitMethodInsn(INVOKEVIRTUAL, CPU_CLASS, "getCpuStack", "()L" + STACK + ";", false);
+        pushInt(value);
+        mv.visitMethodInsn(INVOKEVIRTUAL, STACK, "push", "(I)V", false);
+    }
+
+    // the stack instructions go through the interpreter's handlers
+    private void callHandler(String name) {
+        mv.visitVarInsn(ALOAD, CPU_LOCAL);
+        mv.visitMethodInsn(INVOKESTATIC, LIST, name, HANDLER_DESCRIPTOR, false);
+    }
+
+    private void callList(String name, String descriptor) {
+        mv.visitMethodInsn(INVOKESTATIC, LIST, name, descriptor, false);
+    }
+
+    private void readByte() {
+        mv.visitMethodInsn(INVOKEVIRTUAL, MEMORY, "readByte", "(I)I", false);
+    }
+
+    private void writeByte() {
+        mv.visitMethodInsn(INVOKEVIRTUAL, MEMORY, "writeByte", "(II)V", false);
+    }
+
+    private void pushInt(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+}
@@ -2,14 +2,35 @@ package nes_emulator.nes.components.cpu;
 
 import nes_emulator.nes.components.bus.MainBus;
 import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.nes.diagnostics.DiagnosticRing;
+
+import java.util.function.Predicate;
 
 public class CPU {
 
+    // reasons for the run loops to return
+    public static final int STOP_BUDGET_EXHAUSTED = 0;
+    public static final int STOP_JAMMED = 1;
+    public static final int STOP_BREAKPOINT = 2;
+
     private CPURegisterState registers;
     private CPUStack cpuStack;
     private CPUMemory cpuMemory;
     private MainBus mainBus;
 
+    private boolean jammed;
+    private long cycles; // total cycles executed
+    private int stopReason = STOP_BUDGET_EXHAUSTED;
+    private boolean[] breakpoints; // indexed by PC, only allocated once a breakpoint is set
+    private OpcodeCounters opcodeCounters; // null unless counting
+    private PcProfiler profiler; // null unless profiling
+    private DiagnosticRing diagnostics; // null unless diagnostics are on
+    private Recompiler recompiler; // null unless hot code is compiled
+    private DecodeCache decodeCache; // null decodes every instruction from memory
+    private IdleLoopDetector idleLoopDetector; // null runs every iteration of idle loops
+
+    private CPUInstruction instruction; // decode scratch state, reused for every instruction
+
     public CPUMemory getCpuMemory() {
         return cpuMemory;
     }
@@ -26,16 +47,240 @@ public class CPU {
         return registers;
     }
 
+    public boolean isJammed() {
+        return jammed;
+    }
+
+    public void setJammed(boolean jammed) {
+        this.jammed = jammed;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public int getStopReason() {
+        return stopReason;
+    }
+
+    public void setBreakpoint(int pc, boolean enabled) {
+        if (breakpoints == null) {
+            if (!enabled) {
+                return;
+            }
+            breakpoints = new boolean[0x10000];
+        }
+        breakpoints[pc & 0xFFFF] = enabled;
+    }
+
+    // counts every instruction run by runCycles and runUntil, null turns counting off
+    // executeNextCmd called directly is not counted
+    public void setOpcodeCounters(OpcodeCounters opcodeCounters) {
+        this.opcodeCounters = opcodeCounters;
+    }
+
+    public OpcodeCounters getOpcodeCounters() {
+        return opcodeCounters;
+    }
+
+    // samples the PC while runCycles and runUntil run, null turns profiling off
+    public void setProfiler(PcProfiler profiler) {
+        this.profiler = profiler;
+    }
+
+    public PcProfiler getProfiler() {
+        return profiler;
+    }
+
+    // where events such as stack wraps are posted, null drops them
+    public void setDiagnostics(DiagnosticRing diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    public DiagnosticRing getDiagnostics() {
+        return diagnostics;
+    }
+
+    // lets runCycles run hot code as compiled blocks, null interprets everything
+    // blocks are not used while counting opcodes, profiling or with breakpoints set,
+    // since those need to see every instruction
+    public void setRecompiler(Recompiler recompiler) {
+        this.recompiler = recompiler;
+    }
+
+    public Recompiler getRecompiler() {
+        return recompiler;
+    }
+
+    // on by default, null turns it off
+    public void setDecodeCache(DecodeCache decodeCache) {
+        this.decodeCache = decodeCache;
+    }
+
+    public DecodeCache getDecodeCache() {
+        return decodeCache;
+    }
+
+    // lets runCycles skip ahead in loops that provably change nothing, on by default, null turns it off
+    // the cycles and state are the same as running every iteration
+    public void setIdleLoopDetector(IdleLoopDetector idleLoopDetector) {
+        this.idleLoopDetector = idleLoopDetector;
+    }
+
+    public IdleLoopDetector getIdleLoopDetector() {
+        return idleLoopDetector;
+    }
+
     public CPU() {
-        cpuMemory = new CPUMemory();
+        this(new CPUMemory());
+    }
+
+    // the single-step tests use a flat memory covering the whole address space
+    public CPU(CPUMemory cpuMemory) {
+        this.cpuMemory = cpuMemory;
         mainBus = new MainBus(this);
         cpuStack = new CPUStack(this);
         registers = new CPURegisterState();
+        instruction = new CPUInstruction(this);
+        decodeCache = new DecodeCache();
+        idleLoopDetector = new IdleLoopDetector();
+    }
+
+    // executes a single instruction and returns the number of cycles it took
+    public int executeNextCmd() {
+        instruction.execute();
+        cycles += instruction.numCycles;
+        return instruction.numCycles;
+    }
+
+    // executes the next instruction, and the one after it too when the two are a Superinstructions pair
+    // that runCycles would run anyway, i.e. the first leaves some of the remaining budget
+    private void executeNextPair(long remaining) {
+        instruction.executePair(remaining);
+        cycles += instruction.numCycles;
+    }
+
+    // runs until at least budget cycles have executed, the cpu jams or a breakpoint is reached
+    // returns the cycles executed past the budget, negative if it stopped early
+    // the reason for stopping is available from getStopReason()
+    public long runCycles(long budget) {
+        if (opcodeCounters != null || profiler != null) {
+            return runCyclesInstrumented(budget);
+        }
+        if (recompiler != null && breakpoints == null) {
+            return runCyclesRecompiled(budget);
+        }
+        long target = cycles + budget;
+        boolean[] breakpoints = this.breakpoints;
+        IdleLoopDetector idleLoopDetector = this.idleLoopDetector;
+        if (idleLoopDetector != null) {
+            idleLoopDetector.forget();
+        }
+        while (cycles < target) {
+            if (breakpoints == null) {
+                int pc = registers.PC;
+                executeNextPair(target - cycles);
+                if (idleLoopDetector != null && registers.PC <= pc
+                        && pc - registers.PC < IdleLoopDetector.MAX_LOOP_BYTES) {
+                    // a jump back into a loop short enough to be idle
+                    cycles += idleLoopDetector.afterBackwardJump(this, target - cycles);
+                }
+            } else {
+                executeNextCmd();
+            }
+            if (jammed) {
+                stopReason = STOP_JAMMED;
+                return cycles - target;
+            }
+            if (breakpoints != null && breakpoints[registers.PC]) {
+                stopReason = STOP_BREAKPOINT;
+                return cycles - target;
+            }
+        }
+        stopReason = STOP_BUDGET_EXHAUSTED;
+        return cycles - target;
+    }
+
+    // same as runCycles, with every instruction passed to the opcode counters and the profiler
+    // a separate loop, so runCycles carries no instrumentation code when both are off
+    private long runCyclesInstrumented(long budget) {
+        long target = cycles + budget;
+        boolean[] breakpoints = this.breakpoints;
+        while (cycles < target) {
+            afterInstruction(executeNextCmd());
+            if (jammed) {
+                stopReason = STOP_JAMMED;
+                return cycles - target;
+            }
+            if (breakpoints != null && breakpoints[registers.PC]) {
+                stopReason = STOP_BREAKPOINT;
+                return cycles - target;
+            }
+        }
+        stopReason = STOP_BUDGET_EXHAUSTED;
+        return cycles - target;
+    }
+
+    // same as runCycles, running a compiled block instead of the interpreter wherever the recompiler has one
+    // a block only starts if it can not go past the budget, so this stops after the same instruction as runCycles
+    private long runCyclesRecompiled(long budget) {
+        long target = cycles + budget;
+        Recompiler recompiler = this.recompiler;
+        while (cycles < target) {
+            CompiledBlock block = recompiler.lookup(this, registers.PC, target - cycles);
+            if (block != null) {
+                cycles += recompiler.run(this, block, target - cycles);
+                continue;
+            }
+            executeNextCmd();
+            if (jammed) {
+                stopReason = STOP_JAMMED;
+                return cycles - target;
+            }
+        }
+        stopReason = STOP_BUDGET_EXHAUSTED;
+        return cycles - target;
+    }
+
+    // runs until the condition holds after an instruction or the cpu jams, returns the stop reason
+    public int runUntil(Predicate<CPU> condition) {
+        if (opcodeCounters != null || profiler != null) {
+            return runUntilInstrumented(condition);
+        }
+        while (true) {
+            executeNextCmd();
+            if (jammed) {
+                stopReason = STOP_JAMMED;
+                return stopReason;
+            }
+            if (condition.test(this)) {
+                stopReason = STOP_BREAKPOINT;
+                return stopReason;
+            }
+        }
+    }
+
+    private int runUntilInstrumented(Predicate<CPU> condition) {
+        while (true) {
+            afterInstruction(executeNextCmd());
+            if (jammed) {
+                stopReason = STOP_JAMMED;
+                return stopReason;
+            }
+            if (condition.test(this)) {
+                stopReason = STOP_BREAKPOINT;
+                return stopReason;
+            }
+        }
     }
 
-    public void executeNextCmd() throws Exception {
-        CPUInstruction nextInstruction = new CPUInstruction(this);
-        nextInstruction.executeCommand();
+    private void afterInstruction(int numCycles) {
+        if (opcodeCounters != null) {
+            opcodeCounters.count(instruction.opcode, numCycles);
+        }
+        if (profiler != null) {
+            profiler.afterInstruction(instruction.opcode, registers, cycles);
+        }
     }
 
 }
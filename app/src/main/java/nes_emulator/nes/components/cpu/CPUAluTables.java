@@ -0,0 +1,52 @@
+package nes_emulator.nes.components.cpu;
+
+// precomputed results for the arithmetic, compare and shift instructions
+// every entry holds the 8 bit result in bits 0-7, the carry out in bit 8 and the overflow in bit 9
+final class CPUAluTables {
+
+    static final int CARRY_SHIFT = 8;
+    static final int OVERFLOW_SHIFT = 9;
+
+    // A + operand + carry, indexed by (A << 9) | (operand << 1) | carry
+    // subtraction and compare use the same table with the operand inverted
+    static final short[] ADD = new short[0x20000];
+
+    // shifts and rotates, indexed by (value << 1) | carry
+    static final short[] ASL = new short[0x200];
+    static final short[] LSR = new short[0x200];
+    static final short[] ROL = new short[0x200];
+    static final short[] ROR = new short[0x200];
+
+    static {
+        for (int a = 0; a < 0x100; a++) {
+            for (int operand = 0; operand < 0x100; operand++) {
+                for (int carry = 0; carry < 2; carry++) {
+                    int result = a + operand + carry;
+                    int overflow = (((a ^ result) & (operand ^ result)) >> 7) & 1;
+                    ADD[addIndex(a, operand, carry)] = (short) ((result & 0x1FF) | (overflow << OVERFLOW_SHIFT));
+                }
+            }
+        }
+
+        for (int value = 0; value < 0x100; value++) {
+            for (int carry = 0; carry < 2; carry++) {
+                int index = shiftIndex(value, carry);
+                ASL[index] = (short) (((value << 1) & 0xFF) | (((value >> 7) & 1) << CARRY_SHIFT));
+                LSR[index] = (short) ((value >> 1) | ((value & 1) << CARRY_SHIFT));
+                ROL[index] = (short) (((value << 1) & 0xFF) | carry | (((value >> 7) & 1) << CARRY_SHIFT));
+                ROR[index] = (short) ((value >> 1) | (carry << 7) | ((value & 1) << CARRY_SHIFT));
+            }
+        }
+    }
+
+    private CPUAluTables() {
+    }
+
+    static int addIndex(int a, int operand, int carry) {
+        return (a << 9) | (operand << 1) | carry;
+    }
+
+    static int shiftIndex(int value, int carry) {
+        return (value << 1) | carry;
+    }
+}
@@ -0,0 +1,34 @@
+package nes_emulator.nes.components.cpu;
+
+// immutable decode information for a single opcode
+public final class CPUOpcodeEntry {
+    public final int opcode;
+    public final String opcodeAssembly;
+    public final CPUInstruction.AddressingMode addressingMode;
+    public final int numCycles; // base cycles, without page cross or branch penalties
+    public final int numBytes;
+    public final boolean updatesPC; // false for branches, jumps, returns and traps
+    public final int branchFlagBit; // status bit tested by a branch, -1 if not a branch
+    public final int branchFlagValue;
+
+    CPUOpcodeEntry(int opcode, String opcodeAssembly, CPUInstruction.AddressingMode addressingMode, int numCycles,
+                   boolean updatesPC, int branchFlagBit, int branchFlagValue) {
+        this.opcode = opcode;
+        this.opcodeAssembly = opcodeAssembly;
+        this.addressingMode = addressingMode;
+        this.numCycles = numCycles;
+        this.numBytes = addressingMode.getNumBytes();
+        this.updatesPC = updatesPC;
+        this.branchFlagBit = branchFlagBit;
+        this.branchFlagValue = branchFlagValue;
+    }
+
+    public boolean isBranch() {
+        return branchFlagBit >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return opcodeAssembly + " " + addressingMode;
+    }
+}
@@ -0,0 +1,31 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.cpu.CPUInstruction.AddressingMode;
+
+// static decode table indexed by the opcode byte
+// every entry is built once when the class loads, so decoding an instruction is a single array read
+public final class CPUOpcodeTable {
+
+    private static final CPUOpcodeEntry[] ENTRIES = new CPUOpcodeEntry[0x100];
+
+    static {
+        // generated from src/main/opcodes/opcodes.txt by the generateOpcodes task
+        for (CPUOpcodeEntry entry : CPUGeneratedOpcodes.entries()) {
+            ENTRIES[entry.opcode] = entry;
+        }
+
+        // every opcode that is not implemented traps the cpu instead of throwing
+        for (int opcode = 0; opcode < ENTRIES.length; opcode++) {
+            if (ENTRIES[opcode] == null) {
+                ENTRIES[opcode] = new CPUOpcodeEntry(opcode, "JAM", AddressingMode.IMPLIED, 2, false, -1, 0);
+            }
+        }
+    }
+
+    private CPUOpcodeTable() {
+    }
+
+    public static CPUOpcodeEntry get(int opcode) {
+        return ENTRIES[opcode & 0xFF];
+    }
+}
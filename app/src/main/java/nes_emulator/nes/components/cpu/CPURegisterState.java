@@ -6,7 +6,17 @@ public class CPURegisterState {
     public int Y; // index register 2 - byte
     public int PC; // program counter - short
     public int S; // stack pointer - byte
-    public int P; // status register - byte
+
+    // status register - byte
+    // N, Z, C and V are evaluated lazily: the instructions only store the values the flags come from
+    // and the packed P is only built when someone reads it with getP()
+    private int P; // holds the I, D, B and unused bits, the N, Z, C and V bits are kept below
+    private int flagN; // N is bit 7 of this value
+    private int flagZ; // Z is set when this value is 0
+    private int flagC; // C is this value, 0 or 1
+    private int flagV; // V is bit 7 of this value
+
+    private static final int LAZY_FLAGS_MASK = 0b1100_0011;
 
     // constructor that creates the RegisterState with certain values
     public CPURegisterState(int A, int X, int Y, int PC, int S, int P) {
@@ -15,7 +25,7 @@ public class CPURegisterState {
         this.Y = Y;
         this.PC = PC;
         this.S = S;
-        this.P = P;
+        setP(P);
     }
 
     public CPURegisterState() {
@@ -24,7 +34,23 @@ public class CPURegisterState {
         Y = 0;
         PC = 0x4020; // TODO: make the mapper set this to a value
         S = 0xFF;
-        P = 0;
+        setP(0);
+    }
+
+    public int getP() {
+        return P
+                | (flagN & 0x80)
+                | (flagV & 0x80) >> 1
+                | (flagZ == 0 ? 0b10 : 0)
+                | flagC;
+    }
+
+    public void setP(int value) {
+        P = value & ~LAZY_FLAGS_MASK & 0xFF;
+        flagN = value & 0x80;
+        flagV = (value << 1) & 0x80;
+        flagZ = (value & 0b10) ^ 0b10;
+        flagC = value & 1;
     }
 
     // status register methods
@@ -35,11 +61,11 @@ public class CPURegisterState {
     }
 
     public int getStatusN() {
-        return getBitAt(P, 7);
+        return (flagN >> 7) & 1;
     }
 
     public int getStatusV() {
-        return getBitAt(P, 6);
+        return (flagV >> 7) & 1;
     }
 
     public int getStatusB() {
@@ -55,15 +81,15 @@ public class CPURegisterState {
     }
 
     public int getStatusZ() {
-        return getBitAt(P, 1);
+        return flagZ == 0 ? 1 : 0;
     }
 
     public int getStatusC() {
-        return getBitAt(P, 0);
+        return flagC;
     }
 
     public int getStatusToPush() {
-        int returnP = changeBitAt(P, 1, 4);
+        int returnP = changeBitAt(getP(), 1, 4);
         returnP = changeBitAt(returnP, 1, 5);
         return returnP;
     }
@@ -71,7 +97,7 @@ public class CPURegisterState {
     public void readStatusFromStack(int stackP) {
         stackP = changeBitAt(stackP, 0, 4);
         stackP = changeBitAt(stackP, 1, 5);
-        P = stackP;
+        setP(stackP);
     }
 
 
@@ -92,12 +118,25 @@ public class CPURegisterState {
         P = changeBitAt(P, value, pos);
     }
 
+    // sets N and Z from the result of an operation
+    public void setStatusNZ(int result) {
+        flagN = result;
+        flagZ = result & 0xFF;
+    }
+
+    // sets V from the operands and result of an addition
+    public void setStatusVFromAdd(int first, int second, int result) {
+        flagV = (first ^ result) & (second ^ result);
+    }
+
+    // the single flag setters clear the flag for 0 and set it for any other value, e.g. a carry out of 0x100,
+    // so a caller can never leak bits into P
     public void setStatusN(int value) {
-        setStatusAtBit(value, 7);
+        flagN = value != 0 ? 0x80 : 0;
     }
 
     public void setStatusV(int value) {
-        setStatusAtBit(value, 6);
+        flagV = value != 0 ? 0x80 : 0;
     }
 
     public void setStatusB(int value) {
@@ -113,10 +152,10 @@ public class CPURegisterState {
     }
 
     public void setStatusZ(int value) {
-        setStatusAtBit(value, 1);
+        flagZ = value != 0 ? 0 : 1;
     }
 
     public void setStatusC(int value) {
-        setStatusAtBit(value, 0);
+        flagC = value != 0 ? 1 : 0;
     }
 }
@@ -1,7 +1,12 @@
 package nes_emulator.nes.components.cpu;
 
-import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.nes.components.bus.MainBus;
+import nes_emulator.nes.diagnostics.DiagnosticEvent;
+import nes_emulator.nes.diagnostics.DiagnosticRing;
 
+// the stack page goes through the bus like every other access, so it shows up in bus recordings
+// S wraps around inside page $01 like on the real 6502, and the wrap is only reported when the CPU has a
+// DiagnosticRing, which takes no lock and does no I/O on the cpu thread
 public class CPUStack {
 
     private final CPU cpu;
@@ -12,27 +17,31 @@ public class CPUStack {
 
     public void push(int val) {
         CPURegisterState cpuRegisterState = cpu.getRegisters();
-        CPUMemory cpuMemory = cpu.getCpuMemory();
+        MainBus mainBus = cpu.getMainBus();
         if (cpuRegisterState.S == 0x00) {
-            // stack overflow occured
-            System.out.println("STACK: There was a stack overflow");
+            // stack overflow occured, the next push goes to $01FF
+            DiagnosticRing diagnostics = cpu.getDiagnostics();
+            if (diagnostics != null) {
+                diagnostics.post(DiagnosticEvent.STACK_OVERFLOW, cpu.getCycles());
+            }
         }
         int addr = 0x0100 | cpuRegisterState.S;
         cpuRegisterState.S = (cpuRegisterState.S - 1) & 0xFF;
-        cpuMemory.writeByte(addr, val);
+        mainBus.writeByte(addr, val);
     }
 
     public int pop() {
         CPURegisterState cpuRegisterState = cpu.getRegisters();
-        CPUMemory cpuMemory = cpu.getCpuMemory();
+        MainBus mainBus = cpu.getMainBus();
         if (cpuRegisterState.S == 0xFF) {
-            // stack underflow occured
-            System.out.println("STACK: There was a stack underflow");
+            // stack underflow occured, the pull reads $0100
+            DiagnosticRing diagnostics = cpu.getDiagnostics();
+            if (diagnostics != null) {
+                diagnostics.post(DiagnosticEvent.STACK_UNDERFLOW, cpu.getCycles());
+            }
         }
         cpuRegisterState.S = (cpuRegisterState.S + 1) & 0xFF;
         int addr = 0x0100 | cpuRegisterState.S;
-        return cpuMemory.readByte(addr);
+        return mainBus.readByte(addr);
     }
-
-
 }
@@ -0,0 +1,40 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.bus.MainBus;
+import nes_emulator.nes.components.memory.Memory;
+
+// a run of instructions translated to JVM bytecode by BlockCompiler
+// the block is only valid while the pages holding its code still map the memory it was compiled from,
+// with the same bytes as when it was compiled
+final class CompiledBlock {
+
+    // implemented by the hidden class BlockCompiler generates for the block
+    interface Code {
+        // runs the block and returns the cycles it took, or ~cycles when it stopped before an instruction that
+        // accesses a page that is not plain memory, which the interpreter has to run
+        // the PC is left on the next instruction to run either way
+        // a block that jumps back to its own start keeps looping while another pass fits in the budget
+        int execute(CPU cpu, CPURegisterState registers, MainBus mainBus, int budget);
+    }
+
+    final int start;
+    final int numInstructions;
+    final int maxCycles; // the most one pass can take, page crossings and taken branches included
+    final byte[] bytes; // the code bytes it was compiled from
+    final Memory memory; // the memory the bus mapped at the code pages, e.g. internal ram or PRG-ROM
+    final int[] pages; // the bus pages holding the code
+    final int[] generations; // the write generation of each page when the bytes were last checked
+    final Code code;
+
+    CompiledBlock(int start, int numInstructions, int maxCycles, byte[] bytes, Memory memory, int[] pages,
+                  int[] generations, Code code) {
+        this.start = start;
+        this.numInstructions = numInstructions;
+        this.maxCycles = maxCycles;
+        this.bytes = bytes;
+        this.memory = memory;
+        this.pages = pages;
+        this.generations = generations;
+        this.code = code;
+    }
+}
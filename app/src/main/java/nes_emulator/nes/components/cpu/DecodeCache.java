@@ -0,0 +1,161 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.Memory;
+
+import java.util.Arrays;
+
+// the decoded instruction at every PC, so code that runs again skips the opcode and operand reads and the table lookup
+// an entry remembers the memory it was read from and the write generation of its page
+// after a write to the page its bytes are compared again, since most writes are to data next to the code,
+// and self-modifying code and code loaded into ram over old code are decoded again
+// rom is never written, so its code is decoded once
+// only instructions in plain memory are cached, code on a device or on a recording bus is read like before
+// an instruction that starts one of the Superinstructions pairs is linked to the next one once both are cached,
+// so runCycles can run the second without looking it up
+public class DecodeCache {
+    private static final int NUM_ENTRIES = 0x10000;
+
+    // everything a hit needs sits in one object, so a lookup touches a single cache line
+    static final class Decoded {
+        final CPUOpcodeEntry entry;
+        final int operand; // the bytes after the opcode, the second one in bits 8-15
+        final Memory memory;
+        final boolean canStartPair;
+        int generation; // the write generation of the page when the bytes were last checked
+        Decoded next; // the second instruction of the pair this one starts, null until linked
+
+        Decoded(CPUOpcodeEntry entry, int operand, Memory memory, int generation) {
+            this.entry = entry;
+            this.operand = operand;
+            this.memory = memory;
+            this.generation = generation;
+            this.canStartPair = Superinstructions.canStart(entry);
+        }
+    }
+
+    private final Decoded[] decoded = new Decoded[NUM_ENTRIES];
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long pairs;
+    private boolean fusing = true;
+
+    // the instruction at pc in memory, or null if it has to be decoded
+    Decoded lookup(int pc, Memory memory) {
+        Decoded instruction = decoded[pc];
+        if (instruction != null) {
+            if (instruction.memory == memory) {
+                int generation = memory.getPageGeneration(pc);
+                if (instruction.generation == generation) {
+                    hits++;
+                    return instruction;
+                }
+                if (sameBytes(instruction, pc, memory)) {
+                    // the next instruction may have changed, it is linked again once it has been checked
+                    instruction.generation = generation;
+                    instruction.next = null;
+                    hits++;
+                    return instruction;
+                }
+            }
+            invalidations++;
+        }
+        misses++;
+        return null;
+    }
+
+    private static boolean sameBytes(Decoded instruction, int pc, Memory memory) {
+        int numBytes = instruction.entry.numBytes;
+        int operand = numBytes == 1 ? 0
+                : numBytes == 2 ? memory.readByte(pc + 1)
+                : memory.readByte(pc + 1) | (memory.readByte(pc + 2) << 8);
+        return memory.readByte(pc) == instruction.entry.opcode && operand == instruction.operand;
+    }
+
+    // returns the new entry, or null if the instruction can not be cached
+    Decoded store(int pc, Memory memory, CPUOpcodeEntry entry, int operand) {
+        if ((pc & 0xFF) + entry.numBytes > 0x100) {
+            // the operand is in the next page, which has its own generation
+            return null;
+        }
+        memory.trackPageWrites();
+        Decoded instruction = new Decoded(entry, operand, memory, memory.getPageGeneration(pc));
+        decoded[pc] = instruction;
+        return instruction;
+    }
+
+    // the second instruction of the pair that first, just returned by lookup() or store() for pc, starts
+    // or null if there is none
+    // the two are only linked while both hold the bytes of the same page generation, and first drops the link
+    // when its page is written, so a linked second instruction is as current as first
+    Decoded getPair(Decoded first, int pc) {
+        if (!fusing) {
+            return null;
+        }
+        Decoded next = first.next;
+        if (next != null) {
+            pairs++;
+            return next;
+        }
+        if (!first.canStartPair) {
+            return null;
+        }
+        int nextPc = pc + first.entry.numBytes;
+        if ((nextPc & 0xFF) == 0) {
+            // the next instruction is on another page
+            return null;
+        }
+        next = decoded[nextPc];
+        if (next == null || next.memory != first.memory || next.generation != first.generation) {
+            return null;
+        }
+        if (!Superinstructions.isPair(first.entry, next.entry)) {
+            return null;
+        }
+        first.next = next;
+        pairs++;
+        return next;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    // misses on an entry that was there but whose memory or bytes have changed since
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    // instructions run as the second of a pair, without a lookup of their own
+    public long getPairs() {
+        return pairs;
+    }
+
+    // whether runCycles runs pairs as one step, on by default
+    public void setFusing(boolean fusing) {
+        this.fusing = fusing;
+    }
+
+    // hits over lookups, 0 before the first lookup
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public void resetStatistics() {
+        hits = 0;
+        misses = 0;
+        invalidations = 0;
+        pairs = 0;
+    }
+
+    // drops every entry
+    public void clear() {
+        Arrays.fill(decoded, null);
+    }
+}
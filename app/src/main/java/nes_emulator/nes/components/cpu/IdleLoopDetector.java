@@ -0,0 +1,184 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.bus.MainBus;
+import nes_emulator.nes.components.memory.Memory;
+
+// finds loops that spin without changing anything, e.g. JMP * or LDA $10 BNE * waiting for a value that
+// never changes, so runCycles can skip ahead to the end of its budget instead of running every iteration
+// a loop is skipped once its code is known to leave memory alone: straight-line code ending in a branch or jump
+// back to its start, with no stores, stack accesses or indexed addressing, and only reads from plain memory
+// and an iteration of that code then ends in the same registers it started with
+// the code is checked after the first iteration that changed no registers, and the loop is skipped after the
+// next one, since only an iteration run after the check is known to have run the code that was checked
+// every later iteration then takes the same cycles and ends in the same state, so skipping whole iterations
+// gives exactly the cycle count and state the interpreter would have reached
+// loops that read a device, e.g. LDA $2002 BPL, are never skipped since there is no way to tell when the device
+// would return something else
+public class IdleLoopDetector {
+    static final int MAX_LOOP_BYTES = 16;
+    private static final int UNCHECKED = -1;
+    private static final int NOT_IDLE = 0;
+    private static final int JMP_ABSOLUTE = 0x4C;
+
+    // instructions that only change registers and flags, in the modes with a fixed address
+    private static final boolean[] IDLE_SAFE = new boolean[0x100];
+
+    static {
+        for (int opcode = 0; opcode < IDLE_SAFE.length; opcode++) {
+            CPUOpcodeEntry entry = CPUOpcodeTable.get(opcode);
+            switch (entry.addressingMode) {
+                case IMPLIED:
+                case IMMEDIATE:
+                case ZEROPAGE:
+                case ABSOLUTE:
+                case ACCUMULATOR:
+                    break;
+                default:
+                    continue;
+            }
+            switch (entry.opcodeAssembly) {
+                case "LDA": case "LDX": case "LDY":
+                case "CMP": case "CPX": case "CPY": case "BIT":
+                case "AND": case "ORA": case "EOR": case "ADC": case "SBC":
+                case "TAX": case "TAY": case "TXA": case "TYA": case "TSX": case "TXS":
+                case "INX": case "INY": case "DEX": case "DEY":
+                case "CLC": case "SEC": case "CLV": case "CLD": case "SED": case "CLI": case "SEI":
+                case "NOP":
+                    IDLE_SAFE[opcode] = true;
+                    break;
+                case "ASL": case "LSR": case "ROL": case "ROR":
+                    IDLE_SAFE[opcode] = entry.addressingMode == CPUInstruction.AddressingMode.ACCUMULATOR;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // the state at the last backward jump
+    private int head = -1;
+    private int a;
+    private int x;
+    private int y;
+    private int s;
+    private int p;
+    private long cycles;
+    private int loopCycles = UNCHECKED; // the cycles of one iteration once the code at head is checked
+
+    private long loopsSkipped;
+    private long skippedCycles;
+
+    // called when runCycles starts, memory and registers may have been changed since it last ran
+    void forget() {
+        head = -1;
+        loopCycles = UNCHECKED;
+    }
+
+    // called by runCycles after a step that jumped back to a PC at most MAX_LOOP_BYTES before where it started
+    // remaining is what is left of the budget, returns the cycles to skip, 0 if the loop has to keep running
+    long afterBackwardJump(CPU cpu, long remaining) {
+        CPURegisterState registers = cpu.getRegisters();
+        int status = registers.getP();
+        long now = cpu.getCycles();
+        if (registers.PC != head || registers.A != a || registers.X != x || registers.Y != y
+                || registers.S != s || status != p) {
+            head = registers.PC;
+            a = registers.A;
+            x = registers.X;
+            y = registers.Y;
+            s = registers.S;
+            p = status;
+            cycles = now;
+            loopCycles = UNCHECKED;
+            return 0;
+        }
+        long iterationCycles = now - cycles;
+        cycles = now;
+        if (loopCycles == UNCHECKED) {
+            loopCycles = Math.max(getIdleLoopCycles(cpu.getMainBus(), head), NOT_IDLE);
+            return 0;
+        }
+        // the cycles also show that the PC went through the loop once and did not leave it in between
+        if (iterationCycles != loopCycles) {
+            return 0;
+        }
+        // stop short of the budget, the interpreter runs the last iteration so it ends on the same instruction
+        long iterations = (remaining - 1) / iterationCycles;
+        if (iterations <= 0) {
+            return 0;
+        }
+        long skipped = iterations * iterationCycles;
+        cycles += skipped;
+        loopsSkipped++;
+        skippedCycles += skipped;
+        return skipped;
+    }
+
+    // the cycles of one iteration of the loop starting at start, or -1 if it is not provably idle
+    private static int getIdleLoopCycles(MainBus mainBus, int start) {
+        int pc = start;
+        int loopBytes = 0;
+        int loopCycles = 0;
+        while (loopBytes < MAX_LOOP_BYTES) {
+            Memory code = mainBus.getMemoryPage(pc >> 8);
+            if (code == null) {
+                return -1;
+            }
+            CPUOpcodeEntry entry = CPUOpcodeTable.get(code.readByte(pc));
+            int operand = 0;
+            if (entry.numBytes >= 2) {
+                operand = readCodeByte(mainBus, pc + 1);
+            }
+            if (entry.numBytes == 3) {
+                int high = readCodeByte(mainBus, pc + 2);
+                operand = operand < 0 || high < 0 ? -1 : operand | (high << 8);
+            }
+            if (operand < 0) {
+                return -1;
+            }
+            if (entry.isBranch()) {
+                int target = (pc + (byte) operand + 2) & 0xFFFF;
+                if (target != start) {
+                    return -1;
+                }
+                return loopCycles + entry.numCycles + ((target & 0xFF00) == (pc & 0xFF00) ? 1 : 2);
+            }
+            if (entry.opcode == JMP_ABSOLUTE) {
+                return operand == start ? loopCycles + entry.numCycles : -1;
+            }
+            if (!IDLE_SAFE[entry.opcode]) {
+                return -1;
+            }
+            if ((entry.addressingMode == CPUInstruction.AddressingMode.ZEROPAGE
+                    || entry.addressingMode == CPUInstruction.AddressingMode.ABSOLUTE)
+                    && mainBus.getMemoryPage(operand >> 8) == null) {
+                // a read from a device may have side effects or change over time
+                return -1;
+            }
+            loopCycles += entry.numCycles;
+            loopBytes += entry.numBytes;
+            pc = (pc + entry.numBytes) & 0xFFFF;
+        }
+        return -1;
+    }
+
+    private static int readCodeByte(MainBus mainBus, int addr) {
+        addr &= 0xFFFF;
+        Memory code = mainBus.getMemoryPage(addr >> 8);
+        return code == null ? -1 : code.readByte(addr);
+    }
+
+    // loops runCycles skipped ahead in
+    public long getLoopsSkipped() {
+        return loopsSkipped;
+    }
+
+    public long getSkippedCycles() {
+        return skippedCycles;
+    }
+
+    public void resetStatistics() {
+        loopsSkipped = 0;
+        skippedCycles = 0;
+    }
+}
@@ -0,0 +1,40 @@
+package nes_emulator.nes.components.cpu;
+
+import java.util.Arrays;
+
+// executions and cycles per opcode for one CPU, counted by its run loops when set with CPU.setOpcodeCounters
+// a CPU only runs on one thread at a time, so the counters are plain arrays and counting is a few array increments
+// OpcodeStatistics adds up the counters of every CPU when they are read
+public class OpcodeCounters {
+    // cycles per instruction go up to 7, page crossing and taken branch penalties included
+    public static final int MAX_CYCLES = 7;
+
+    final long[] executions = new long[0x100];
+    final long[] cycles = new long[0x100];
+    // the number of times each opcode took each number of cycles, indexed by opcode * (MAX_CYCLES + 1) + cycles
+    final long[] cycleHistogram = new long[0x100 * (MAX_CYCLES + 1)];
+
+    void count(int opcode, int numCycles) {
+        executions[opcode]++;
+        cycles[opcode] += numCycles;
+        cycleHistogram[opcode * (MAX_CYCLES + 1) + Math.min(numCycles, MAX_CYCLES)]++;
+    }
+
+    public long getExecutions(int opcode) {
+        return executions[opcode];
+    }
+
+    public long getCycles(int opcode) {
+        return cycles[opcode];
+    }
+
+    public long getCycleCount(int opcode, int numCycles) {
+        return cycleHistogram[opcode * (MAX_CYCLES + 1) + numCycles];
+    }
+
+    public void reset() {
+        Arrays.fill(executions, 0);
+        Arrays.fill(cycles, 0);
+        Arrays.fill(cycleHistogram, 0);
+    }
+}
@@ -0,0 +1,145 @@
+package nes_emulator.nes.components.cpu;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.IntStream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// the opcode counters of every CPU it handed out, added up when they are read
+// the counters are written by their CPU without synchronization, so a read while they run can be slightly behind
+public class OpcodeStatistics implements OpcodeStatisticsMBean {
+    public static final String OBJECT_NAME = "nes_emulator:type=OpcodeStatistics";
+
+    private final List<OpcodeCounters> counters = new CopyOnWriteArrayList<>();
+
+    // counters for one CPU, pass them to CPU.setOpcodeCounters
+    public OpcodeCounters newCounters() {
+        OpcodeCounters cpuCounters = new OpcodeCounters();
+        counters.add(cpuCounters);
+        return cpuCounters;
+    }
+
+    // makes the statistics visible to JMX clients such as jconsole
+    public void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    @Override
+    public long getTotalInstructions() {
+        long total = 0;
+        for (long executions : getExecutions()) {
+            total += executions;
+        }
+        return total;
+    }
+
+    @Override
+    public long getTotalCycles() {
+        long total = 0;
+        for (long cycles : getCycles()) {
+            total += cycles;
+        }
+        return total;
+    }
+
+    @Override
+    public long[] getExecutions() {
+        long[] total = new long[0x100];
+        for (OpcodeCounters cpuCounters : counters) {
+            for (int opcode = 0; opcode < 0x100; opcode++) {
+                total[opcode] += cpuCounters.executions[opcode];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long[] getCycles() {
+        long[] total = new long[0x100];
+        for (OpcodeCounters cpuCounters : counters) {
+            for (int opcode = 0; opcode < 0x100; opcode++) {
+                total[opcode] += cpuCounters.cycles[opcode];
+            }
+        }
+        return total;
+    }
+
+    public long[] getCycleHistogram() {
+        long[] total = new long[0x100 * (OpcodeCounters.MAX_CYCLES + 1)];
+        for (OpcodeCounters cpuCounters : counters) {
+            for (int i = 0; i < total.length; i++) {
+                total[i] += cpuCounters.cycleHistogram[i];
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String[] getTopOpcodes(int count) {
+        long[] executions = getExecutions();
+        long[] cycles = getCycles();
+        return IntStream.range(0, 0x100)
+                .filter(opcode -> executions[opcode] > 0)
+                .boxed()
+                .sorted((first, second) -> Long.compare(executions[second], executions[first]))
+                .limit(count)
+                .map(opcode -> String.format(Locale.ROOT, "%02X %s: %d executions, %d cycles",
+                        opcode, CPUOpcodeTable.get(opcode), executions[opcode], cycles[opcode]))
+                .toArray(String[]::new);
+    }
+
+    // one row per executed opcode with its totals and how often it took each number of cycles
+    @Override
+    public void dumpCsv(String file) throws IOException {
+        long[] executions = getExecutions();
+        long[] cycles = getCycles();
+        long[] histogram = getCycleHistogram();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("opcode,mnemonic,addressing_mode,executions,cycles,average_cycles");
+        for (int numCycles = 0; numCycles <= OpcodeCounters.MAX_CYCLES; numCycles++) {
+            builder.append(",cycles_").append(numCycles);
+        }
+        builder.append('\n');
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            if (executions[opcode] == 0) {
+                continue;
+            }
+            CPUOpcodeEntry entry = CPUOpcodeTable.get(opcode);
+            builder.append(String.format("%02X", opcode))
+                    .append(',').append(entry.opcodeAssembly)
+                    .append(",\"").append(entry.addressingMode).append('"') // the names contain commas
+                    .append(',').append(executions[opcode])
+                    .append(',').append(cycles[opcode])
+                    .append(',').append(String.format(Locale.ROOT, "%.3f", (double) cycles[opcode] / executions[opcode]));
+            for (int numCycles = 0; numCycles <= OpcodeCounters.MAX_CYCLES; numCycles++) {
+                builder.append(',').append(histogram[opcode * (OpcodeCounters.MAX_CYCLES + 1) + numCycles]);
+            }
+            builder.append('\n');
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            writer.write(builder.toString());
+        }
+    }
+
+    @Override
+    public void reset() {
+        for (OpcodeCounters cpuCounters : counters) {
+            cpuCounters.reset();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package nes_emulator.nes.components.cpu;
+
+import java.io.IOException;
+
+// what OpcodeStatistics shows over JMX, the arrays are indexed by opcode
+public interface OpcodeStatisticsMBean {
+    long getTotalInstructions();
+
+    long getTotalCycles();
+
+    long[] getExecutions();
+
+    long[] getCycles();
+
+    // e.g. "A9 LDA immediate: 1234 executions, 2468 cycles", most executed first
+    String[] getTopOpcodes(int count);
+
+    void dumpCsv(String file) throws IOException;
+
+    void reset();
+}
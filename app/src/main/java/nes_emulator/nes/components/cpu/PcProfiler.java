@@ -0,0 +1,154 @@
+package nes_emulator.nes.components.cpu;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+// samples the 6502 PC every sampleInterval cycles, together with a shadow call stack, when set with CPU.setProfiler
+// the call stack is kept from the opcodes the run loop executes: JSR and BRK push a frame, RTS and RTI drop every
+// frame whose return address has been pulled off the stack, so code that drops return addresses with PLA
+// does not leave stale frames behind for long
+// samples go into a ring buffer of ints, the oldest are overwritten once it is full
+public class PcProfiler {
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+    public static final int MAX_DEPTH = 128; // a JSR frame takes 2 bytes of the 256 byte stack
+
+    private static final int OPCODE_BRK = 0x00;
+    private static final int OPCODE_JSR = 0x20;
+    private static final int OPCODE_RTI = 0x40;
+    private static final int OPCODE_RTS = 0x60;
+
+    private final int sampleInterval;
+    private long nextSample;
+
+    // the shadow call stack, the address each frame was entered at and the stack pointer before the call
+    private final int[] frameAddresses = new int[MAX_DEPTH];
+    private final int[] frameStackPointers = new int[MAX_DEPTH];
+    private final boolean[] frameInterrupts = new boolean[MAX_DEPTH];
+    private int depth;
+
+    // each sample is stored as [length, pc, frames...] where length counts the whole entry
+    private final int[] ring;
+    private final int mask;
+    private long head; // where the next sample is written
+    private long tail; // where the oldest sample starts
+    private long numSamples;
+
+    public PcProfiler(int sampleInterval) {
+        this(sampleInterval, DEFAULT_CAPACITY);
+    }
+
+    // capacity is in ints and must be a power of two
+    public PcProfiler(int sampleInterval, int capacity) {
+        if (sampleInterval < 1 || Integer.bitCount(capacity) != 1 || capacity < MAX_DEPTH + 2) {
+            throw new IllegalArgumentException("invalid sample interval or capacity");
+        }
+        this.sampleInterval = sampleInterval;
+        this.ring = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // called by the run loop after every instruction
+    void afterInstruction(int opcode, CPURegisterState registers, long cycles) {
+        switch (opcode) {
+            case OPCODE_JSR:
+                push(registers.PC, (registers.S + 2) & 0xFF, false);
+                break;
+            case OPCODE_BRK:
+                push(registers.PC, (registers.S + 3) & 0xFF, true);
+                break;
+            case OPCODE_RTS:
+            case OPCODE_RTI:
+                popReturned(registers.S);
+                break;
+            default:
+                break;
+        }
+        if (cycles >= nextSample) {
+            // after a long pause, e.g. the first sample, start counting from now instead of catching up
+            nextSample = Math.max(nextSample + sampleInterval, cycles + 1);
+            sample(registers.PC);
+        }
+    }
+
+    private void push(int address, int stackPointer, boolean interrupt) {
+        if (depth == MAX_DEPTH) {
+            // the stack pointer wrapped around, the frames can not be trusted any more
+            depth = 0;
+        }
+        frameAddresses[depth] = address;
+        frameStackPointers[depth] = stackPointer;
+        frameInterrupts[depth] = interrupt;
+        depth++;
+    }
+
+    // drops the frames whose return address is above the stack pointer
+    private void popReturned(int stackPointer) {
+        while (depth > 0 && frameStackPointers[depth - 1] <= stackPointer) {
+            depth--;
+        }
+    }
+
+    private void sample(int pc) {
+        int length = depth + 2;
+        while (head + length - tail > ring.length) {
+            tail += ring[(int) tail & mask];
+        }
+        ring[(int) head & mask] = length;
+        ring[(int) (head + 1) & mask] = pc;
+        for (int i = 0; i < depth; i++) {
+            // interrupt frames are stored negated, address + 1 so $0000 stays distinguishable
+            int address = frameAddresses[i];
+            ring[(int) (head + 2 + i) & mask] = frameInterrupts[i] ? -(address + 1) : address;
+        }
+        head += length;
+        numSamples++;
+    }
+
+    // total samples taken, including the ones overwritten in the ring
+    public long getNumSamples() {
+        return numSamples;
+    }
+
+    public void reset() {
+        head = 0;
+        tail = 0;
+        numSamples = 0;
+        depth = 0;
+    }
+
+    // the samples in the ring as folded stacks, one "frame;frame;...;leaf count" line per distinct stack,
+    // which flamegraph.pl and speedscope read
+    // the root frame is "main", subroutines are "sub_XXXX", interrupt handlers "irq_XXXX" and the leaf is "pc_XXXX"
+    public void writeFolded(Writer writer) throws IOException {
+        Map<String, Long> stacks = new TreeMap<>();
+        StringBuilder builder = new StringBuilder();
+        for (long entry = tail; entry < head; entry += ring[(int) entry & mask]) {
+            int length = ring[(int) entry & mask];
+            builder.setLength(0);
+            builder.append("main");
+            for (int i = 2; i < length; i++) {
+                int frame = ring[(int) (entry + i) & mask];
+                if (frame < 0) {
+                    builder.append(";irq_").append(hex(-frame - 1));
+                } else {
+                    builder.append(";sub_").append(hex(frame));
+                }
+            }
+            builder.append(";pc_").append(hex(ring[(int) (entry + 1) & mask]));
+            stacks.merge(builder.toString(), 1L, Long::sum);
+        }
+        for (Map.Entry<String, Long> stack : stacks.entrySet()) {
+            writer.write(stack.getKey());
+            writer.write(' ');
+            writer.write(Long.toString(stack.getValue()));
+            writer.write('\n');
+        }
+    }
+
+    private static String hex(int address) {
+        String hex = Integer.toHexString(address).toUpperCase();
+        return "0000".substring(hex.length()) + hex;
+    }
+}
@@ -0,0 +1,161 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.Memory;
+
+import java.util.Arrays;
+
+// the optional tier that runs hot code as compiled blocks instead of interpreting it, set with CPU.setRecompiler
+// runCycles counts how often each PC is interpreted, and once one reaches the threshold the instructions from there
+// to the next jump, branch, return or unsupported instruction are compiled by BlockCompiler
+// blocks are compiled against whatever memory the bus maps at their pages, internal ram as well as PRG-RAM and PRG-ROM
+// a block is dropped when a write changes its code, or when its pages are mapped to something else
+// one recompiler belongs to one CPU
+public class Recompiler {
+    public static final int DEFAULT_THRESHOLD = 256;
+
+    private final int threshold;
+    // interpretations of each PC, negative while a PC that could not be compiled waits to be tried again
+    private final int[] counts = new int[0x10000];
+    private final CompiledBlock[] blocks = new CompiledBlock[0x10000];
+    private final BlockCompiler compiler = new BlockCompiler();
+    private boolean interpretNext; // the last block stopped before an instruction the interpreter has to run
+
+    private long blocksCompiled;
+    private long compiledInstructions;
+    private long compileNanos;
+    private long blockRuns;
+    private long sideExits;
+    private long invalidations;
+
+    public Recompiler() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    public Recompiler(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        this.threshold = threshold;
+    }
+
+    // the block to run at pc, or null if the instruction there should be interpreted
+    // remaining is what is left of the runCycles budget, a block only runs if all of it fits
+    CompiledBlock lookup(CPU cpu, int pc, long remaining) {
+        if (interpretNext) {
+            interpretNext = false;
+            return null;
+        }
+        CompiledBlock block = blocks[pc];
+        if (block == null) {
+            if (++counts[pc] >= threshold) {
+                block = compile(cpu, pc);
+            }
+            if (block == null) {
+                return null;
+            }
+        }
+        if (block.maxCycles > remaining) {
+            return null;
+        }
+        if (!isValid(cpu, block)) {
+            blocks[pc] = null;
+            counts[pc] = 0;
+            invalidations++;
+            return null;
+        }
+        return block;
+    }
+
+    // runs the block and returns the cycles it took
+    int run(CPU cpu, CompiledBlock block, long remaining) {
+        blockRuns++;
+        int budget = (int) Math.min(remaining, Integer.MAX_VALUE);
+        int result = block.code.execute(cpu, cpu.getRegisters(), cpu.getMainBus(), budget);
+        if (result >= 0) {
+            return result;
+        }
+        sideExits++;
+        interpretNext = true;
+        if (result == -1 && cpu.getRegisters().PC == block.start) {
+            // the first instruction goes to a device, e.g. a loop polling a register, so leave it to the interpreter
+            blocks[block.start] = null;
+            counts[block.start] = -threshold * 16;
+        }
+        return ~result;
+    }
+
+    private CompiledBlock compile(CPU cpu, int pc) {
+        long startTime = System.nanoTime();
+        CompiledBlock block;
+        try {
+            block = compiler.compile(cpu, pc);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not load the block compiled at " + Integer.toHexString(pc), e);
+        }
+        compileNanos += System.nanoTime() - startTime;
+        if (block == null) {
+            // try again much later, the code or the memory map may have changed by then
+            counts[pc] = -threshold * 16;
+            return null;
+        }
+        blocks[pc] = block;
+        blocksCompiled++;
+        compiledInstructions += block.numInstructions;
+        return block;
+    }
+
+    // the code pages have to still map the memory the block was compiled from, and hold the same bytes
+    // a page that was written to since the last check is compared byte by byte, since most writes are to data
+    private boolean isValid(CPU cpu, CompiledBlock block) {
+        Memory memory = block.memory;
+        for (int i = 0; i < block.pages.length; i++) {
+            int page = block.pages[i];
+            if (cpu.getMainBus().getMemoryPage(page) != memory) {
+                return false;
+            }
+            int generation = memory.getPageGeneration(page << 8);
+            if (generation != block.generations[i]) {
+                for (int j = 0; j < block.bytes.length; j++) {
+                    if (memory.readByte(block.start + j) != (block.bytes[j] & 0xFF)) {
+                        return false;
+                    }
+                }
+                block.generations[i] = generation;
+            }
+        }
+        return true;
+    }
+
+    public long getBlocksCompiled() {
+        return blocksCompiled;
+    }
+
+    public long getCompiledInstructions() {
+        return compiledInstructions;
+    }
+
+    public long getCompileNanos() {
+        return compileNanos;
+    }
+
+    public long getBlockRuns() {
+        return blockRuns;
+    }
+
+    // runs that stopped early at an access to a page that is not plain memory
+    public long getSideExits() {
+        return sideExits;
+    }
+
+    // blocks dropped because their code changed or was unmapped
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    // drops every block and count, e.g. after loading a different program
+    public void reset() {
+        Arrays.fill(counts, 0);
+        Arrays.fill(blocks, null);
+        interpretNext = false;
+    }
+}
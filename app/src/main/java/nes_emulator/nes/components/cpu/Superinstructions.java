@@ -0,0 +1,50 @@
+package nes_emulator.nes.components.cpu;
+
+// the instruction pairs runCycles runs as one step, found in profiles of 6502 loops:
+// LDA then STA copying a byte, and DEX, DEY, LDA or a compare followed by a conditional branch on its flags,
+// e.g. DEX BNE counting down or LDA $2002 BPL polling a register
+// the first instruction never changes the PC, so the second always starts right after it
+// CPUGeneratedOpcodes.executePair() runs each pair with a single method generated for it
+final class Superinstructions {
+    private static final int[] LDA_OPCODES = {0xA1, 0xA5, 0xA9, 0xAD, 0xB1, 0xB5, 0xB9, 0xBD};
+    private static final int[] STA_OPCODES = {0x81, 0x85, 0x8D, 0x91, 0x95, 0x99, 0x9D};
+    // DEX, DEY and every CMP, CPX and CPY
+    private static final int[] BRANCH_FLAG_OPCODES = {
+            0xCA, 0x88,
+            0xC1, 0xC5, 0xC9, 0xCD, 0xD1, 0xD5, 0xD9, 0xDD,
+            0xE0, 0xE4, 0xEC,
+            0xC0, 0xC4, 0xCC,
+    };
+
+    private static final boolean[] STARTS_PAIR = new boolean[0x100];
+    private static final boolean[] LDA = new boolean[0x100];
+    private static final boolean[] STA = new boolean[0x100];
+
+    static {
+        for (int opcode : LDA_OPCODES) {
+            LDA[opcode] = true;
+            STARTS_PAIR[opcode] = true;
+        }
+        for (int opcode : STA_OPCODES) {
+            STA[opcode] = true;
+        }
+        for (int opcode : BRANCH_FLAG_OPCODES) {
+            STARTS_PAIR[opcode] = true;
+        }
+    }
+
+    private Superinstructions() {
+    }
+
+    // whether the instruction can be the first of a pair
+    static boolean canStart(CPUOpcodeEntry entry) {
+        return STARTS_PAIR[entry.opcode];
+    }
+
+    static boolean isPair(CPUOpcodeEntry first, CPUOpcodeEntry second) {
+        if (!STARTS_PAIR[first.opcode]) {
+            return false;
+        }
+        return second.isBranch() || (LDA[first.opcode] && STA[second.opcode]);
+    }
+}
@@ -1,31 +1,113 @@
 package nes_emulator.nes.components.memory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class CPUMemory extends Memory {
+    // the NES has 2 KB of internal ram, mirrored up to $1FFF
+    public static final int INTERNAL_RAM_SIZE = 0x800;
+    // flat memory covering the whole address space, used by the single-step tests
+    public static final int ADDRESS_SPACE_SIZE = 0x10000;
+
+    // journal mode, turned on by the first initialize()
+    // every initialized or written address is recorded once, so the next initialize() only resets those
+    // and getMemoryArr() only reads those, instead of going over the whole memory
+    private long[] touched; // bitset of the addresses in the journal
+    private int[] journal;
+    private int journalSize;
+
     public CPUMemory() {
-//        memorySize = 0x800;
-        memorySize = 0x10000;
+        this(INTERNAL_RAM_SIZE);
+    }
 
-        memoryBytes = new int[memorySize];
+    public CPUMemory(int memorySize) {
+        super(memorySize);
+    }
+
+    @Override
+    public void writeByte(int addr, int val) {
+        addr &= mask;
+        memoryBytes[addr] = (byte) val;
+        if (touched != null) {
+            markTouched(addr);
+        }
+        if (pageGenerations != null) {
+            pageGenerations[addr >> 8]++;
+        }
+    }
+
+    private void markTouched(int addr) {
+        long bit = 1L << addr;
+        if ((touched[addr >> 6] & bit) != 0) {
+            return;
+        }
+        touched[addr >> 6] |= bit;
+        if (journalSize == journal.length) {
+            journal = Arrays.copyOf(journal, journalSize * 2);
+        }
+        journal[journalSize++] = addr;
     }
 
     public void initialize(int[][] ram) {
-        for (int i = 0; i < memoryBytes.length; i++) {
-            memoryBytes[i] = 0x100;
+        initialize(ram, ram.length);
+    }
+
+    // initializes from the first length entries of ram
+    public void initialize(int[][] ram, int length) {
+        if (touched == null) {
+            // anything written before journal mode is unknown, so clear everything once
+            touched = new long[(memorySize + 63) >> 6];
+            journal = new int[64];
+            Arrays.fill(memoryBytes, (byte) 0);
+        } else {
+            for (int i = 0; i < journalSize; i++) {
+                int addr = journal[i];
+                memoryBytes[addr] = 0;
+                touched[addr >> 6] = 0;
+            }
+        }
+        journalSize = 0;
+        if (pageGenerations != null) {
+            // the bytes below are stored without writeByte
+            for (int page = 0; page < pageGenerations.length; page++) {
+                pageGenerations[page]++;
+            }
         }
-        for (int i = 0; i < ram.length; i++) {
-            memoryBytes[ram[i][0]] = ram[i][1];
+
+        for (int i = 0; i < length; i++) {
+            int addr = ram[i][0] & mask;
+            memoryBytes[addr] = (byte) ram[i][1];
+            markTouched(addr);
         }
     }
 
+    // whether the address was initialized or written since initialize()
+    public boolean isTouched(int addr) {
+        addr &= mask;
+        return touched != null && (touched[addr >> 6] & (1L << addr)) != 0;
+    }
+
+    public int getNumTouched() {
+        return journalSize;
+    }
+
+    // the addresses initialized or written since initialize(), in address order
+    public int[] getTouchedAddresses() {
+        int[] addresses = Arrays.copyOf(journal == null ? new int[0] : journal, journalSize);
+        Arrays.sort(addresses);
+        return addresses;
+    }
+
+    // returns the address and value of everything initialized or written since initialize(), in address order
     public ArrayList<int[]> getMemoryArr() {
-        ArrayList<int[]> result = new ArrayList<>();
-        for (int i = 0; i < memoryBytes.length; i++) {
-            if (memoryBytes[i] >= 256) {
-                continue;
-            }
-            result.add(new int[]{i, memoryBytes[i]});
+        ArrayList<int[]> result = new ArrayList<>(journalSize);
+        if (touched == null) {
+            return result;
+        }
+        Arrays.sort(journal, 0, journalSize);
+        for (int i = 0; i < journalSize; i++) {
+            int addr = journal[i];
+            result.add(new int[]{addr, memoryBytes[addr] & 0xFF});
         }
         return result;
     }
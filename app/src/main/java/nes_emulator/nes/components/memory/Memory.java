@@ -1,14 +1,50 @@
 package nes_emulator.nes.components.memory;
 
-public abstract class Memory {
-    protected int memorySize;
-    protected int[] memoryBytes;
+import nes_emulator.nes.components.bus.BusDevice;
 
-    public int readByte(int addr) {
-        return memoryBytes[addr % memorySize] & 0xFF;
+// byte backed memory, the size is a power of two so addresses mirror with a mask instead of a division
+public abstract class Memory implements BusDevice {
+    protected final int memorySize;
+    protected final int mask;
+    protected final byte[] memoryBytes;
+
+    // the number of writes to each 256 byte page, once trackPageWrites() is called
+    // code that caches what it decoded from memory compares these to see if the bytes may have changed
+    protected int[] pageGenerations;
+
+    protected Memory(int memorySize) {
+        if (Integer.bitCount(memorySize) != 1) {
+            throw new IllegalArgumentException("Memory size must be a power of two: " + memorySize);
+        }
+        this.memorySize = memorySize;
+        this.mask = memorySize - 1;
+        this.memoryBytes = new byte[memorySize];
+    }
+
+    public int getMemorySize() {
+        return memorySize;
+    }
+
+    public final int readByte(int addr) {
+        return memoryBytes[addr & mask] & 0xFF;
     }
 
     public void writeByte(int addr, int val) {
-        memoryBytes[addr % memorySize] = val & 0xFF;
+        addr &= mask;
+        memoryBytes[addr] = (byte) val;
+        if (pageGenerations != null) {
+            pageGenerations[addr >> 8]++;
+        }
+    }
+
+    public void trackPageWrites() {
+        if (pageGenerations == null) {
+            pageGenerations = new int[(memorySize + 0xFF) >> 8];
+        }
+    }
+
+    // the write generation of the page holding the address, 0 until trackPageWrites() is called
+    public final int getPageGeneration(int addr) {
+        return pageGenerations == null ? 0 : pageGenerations[(addr & mask) >> 8];
     }
 }
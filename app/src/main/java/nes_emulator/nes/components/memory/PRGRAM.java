@@ -0,0 +1,14 @@
+package nes_emulator.nes.components.memory;
+
+// battery or work ram on the cartridge, mapped at $6000-$7FFF
+public class PRGRAM extends Memory {
+    public static final int DEFAULT_SIZE = 0x2000;
+
+    public PRGRAM() {
+        super(DEFAULT_SIZE);
+    }
+
+    public PRGRAM(int memorySize) {
+        super(memorySize);
+    }
+}
@@ -0,0 +1,16 @@
+package nes_emulator.nes.components.memory;
+
+// program rom on the cartridge, mapped at $8000-$FFFF
+// a 16 KB rom is mirrored into both halves by the mask, writes are ignored
+public class PRGROM extends Memory {
+
+    public PRGROM(byte[] rom) {
+        super(rom.length);
+        System.arraycopy(rom, 0, memoryBytes, 0, rom.length);
+    }
+
+    @Override
+    public void writeByte(int addr, int val) {
+        // rom, writes go to the mapper registers instead
+    }
+}
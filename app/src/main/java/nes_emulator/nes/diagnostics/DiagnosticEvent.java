@@ -0,0 +1,17 @@
+package nes_emulator.nes.diagnostics;
+
+// the events a DiagnosticRing can carry, stored in the ring by ordinal
+public enum DiagnosticEvent {
+    // S wrapped from $00 to $FF on a push, legal on the 6502 but usually a bug in the program
+    STACK_OVERFLOW("stack overflow"),
+    // S wrapped from $FF to $00 on a pull
+    STACK_UNDERFLOW("stack underflow");
+
+    static final DiagnosticEvent[] VALUES = values();
+
+    final String description;
+
+    DiagnosticEvent(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,100 @@
+package nes_emulator.nes.diagnostics;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// collects the diagnostic events of every CPU it handed a ring to and prints them from a background thread
+// the thread wakes up once per interval and prints at most one line per event type, so a program that
+// wraps the stack a million times a second costs one line a second instead of a million synchronized printlns
+// CPUs without a ring do not post anything, which is the default
+public class DiagnosticLog implements Closeable {
+    public static final int DEFAULT_RING_CAPACITY = 1 << 12;
+    public static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private final PrintStream out;
+    private final long intervalMillis;
+    private final int ringCapacity;
+    private final List<DiagnosticRing> rings = new CopyOnWriteArrayList<>();
+    private final DiagnosticSummary summary = new DiagnosticSummary();
+    private final long[] totals = new long[DiagnosticEvent.VALUES.length];
+    private Thread thread;
+
+    public DiagnosticLog() {
+        this(System.err, DEFAULT_INTERVAL_MILLIS, DEFAULT_RING_CAPACITY);
+    }
+
+    public DiagnosticLog(PrintStream out, long intervalMillis, int ringCapacity) {
+        if (intervalMillis < 1 || Integer.bitCount(ringCapacity) != 1) {
+            throw new IllegalArgumentException("invalid interval or ring capacity");
+        }
+        this.out = out;
+        this.intervalMillis = intervalMillis;
+        this.ringCapacity = ringCapacity;
+    }
+
+    // a ring for one CPU, pass it to CPU.setDiagnostics
+    public DiagnosticRing newRing() {
+        DiagnosticRing ring = new DiagnosticRing(ringCapacity);
+        rings.add(ring);
+        return ring;
+    }
+
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        thread = new Thread(this::drainLoop, "diagnostic-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void drainLoop() {
+        while (true) {
+            try {
+                Thread.sleep(intervalMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            flush();
+        }
+    }
+
+    // drains every ring and prints what was in them, also called by the background thread
+    public synchronized void flush() {
+        summary.clear();
+        for (DiagnosticRing ring : rings) {
+            ring.drainTo(summary);
+        }
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += summary.counts[i];
+        }
+        summary.print(out);
+        out.flush();
+    }
+
+    // the number of events drained so far
+    public synchronized long getTotal(DiagnosticEvent event) {
+        return totals[event.ordinal()];
+    }
+
+    // stops the background thread and prints what is left
+    @Override
+    public void close() {
+        Thread running;
+        synchronized (this) {
+            running = thread;
+            thread = null;
+        }
+        if (running != null) {
+            running.interrupt();
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+}
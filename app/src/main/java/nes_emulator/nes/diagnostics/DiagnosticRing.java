@@ -0,0 +1,59 @@
+package nes_emulator.nes.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// the diagnostic events of one CPU, posted from its thread and drained by the DiagnosticLog thread
+// there is one writer and one reader, so the ring is two preallocated arrays and two counters:
+// the writer fills a slot and then publishes it by moving head, the reader moves tail once it has read it
+// when the ring is full the event is dropped and counted instead of waiting for the reader
+public class DiagnosticRing {
+    private final int[] events;
+    private final long[] eventCycles;
+    private final int mask;
+
+    private final AtomicLong head = new AtomicLong(); // written by the cpu thread
+    private final AtomicLong tail = new AtomicLong(); // written by the drain thread
+    private final AtomicLong dropped = new AtomicLong(); // written by the cpu thread
+    private long cachedTail; // the writer's last look at tail, so a post usually reads no shared state
+    private long reportedDropped; // read by the drain thread only
+
+    // capacity must be a power of two
+    DiagnosticRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two");
+        }
+        events = new int[capacity];
+        eventCycles = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    // adds the event stamped with the cpu cycle it happened at, never blocks or allocates
+    public void post(DiagnosticEvent event, long cycle) {
+        long position = head.get();
+        if (position - cachedTail >= events.length) {
+            cachedTail = tail.get();
+            if (position - cachedTail >= events.length) {
+                dropped.lazySet(dropped.get() + 1);
+                return;
+            }
+        }
+        int slot = (int) position & mask;
+        events[slot] = event.ordinal();
+        eventCycles[slot] = cycle;
+        head.lazySet(position + 1);
+    }
+
+    // passes every published event to the summary and frees their slots
+    void drainTo(DiagnosticSummary summary) {
+        long position = tail.get();
+        long end = head.get();
+        for (; position < end; position++) {
+            int slot = (int) position & mask;
+            summary.add(events[slot], eventCycles[slot]);
+        }
+        tail.lazySet(end);
+        long totalDropped = dropped.get();
+        summary.addDropped(totalDropped - reportedDropped);
+        reportedDropped = totalDropped;
+    }
+}
@@ -0,0 +1,49 @@
+package nes_emulator.nes.diagnostics;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+// the events drained in one interval, counted per event so a burst becomes a single line
+class DiagnosticSummary {
+    final long[] counts = new long[DiagnosticEvent.VALUES.length];
+    final long[] firstCycles = new long[DiagnosticEvent.VALUES.length];
+    final long[] lastCycles = new long[DiagnosticEvent.VALUES.length];
+    long dropped;
+
+    void add(int event, long cycle) {
+        if (counts[event] == 0) {
+            firstCycles[event] = cycle;
+            lastCycles[event] = cycle;
+        } else {
+            // events of different CPUs are mixed, so the cycles are not in order
+            firstCycles[event] = Math.min(firstCycles[event], cycle);
+            lastCycles[event] = Math.max(lastCycles[event], cycle);
+        }
+        counts[event]++;
+    }
+
+    void addDropped(long numDropped) {
+        dropped += numDropped;
+    }
+
+    // one line per event that happened, nothing if none did
+    void print(PrintStream out) {
+        for (DiagnosticEvent event : DiagnosticEvent.VALUES) {
+            int i = event.ordinal();
+            if (counts[i] == 1) {
+                out.println("DIAGNOSTICS: " + event.description + " at cycle " + firstCycles[i]);
+            } else if (counts[i] > 1) {
+                out.println("DIAGNOSTICS: " + event.description + " x" + counts[i]
+                        + " between cycles " + firstCycles[i] + " and " + lastCycles[i]);
+            }
+        }
+        if (dropped > 0) {
+            out.println("DIAGNOSTICS: " + dropped + " events dropped, the rings were full");
+        }
+    }
+
+    void clear() {
+        Arrays.fill(counts, 0);
+        dropped = 0;
+    }
+}
@@ -0,0 +1,28 @@
+package nes_emulator.singlestep;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.security.MessageDigest;
+
+// feeds a compiled class into a digest without its debug information, so a class only hashes differently
+// when its code or its constants change, not when a comment moves the line numbers around
+class ClassFileHasher {
+    private ClassFileHasher() {
+    }
+
+    static void hashClass(byte[] classFile, MessageDigest digest) {
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(classFile).accept(writer, ClassReader.SKIP_DEBUG);
+        digest.update(writer.toByteArray());
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package nes_emulator.singlestep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+// fingerprint of everything that decides the result of running the tests for one opcode: every class of the
+// emulator, which is the directory or jar this class was loaded from, and the corpus file
+// the classes include the generated CPUGeneratedOpcodes and CPUOpcodeTable, so opcodes.txt and the
+// GenerateOpcodes templates are covered as well
+public class OpcodeFingerprint {
+    private final byte[] codeDigest;
+
+    public OpcodeFingerprint() throws IOException {
+        Path codeSource;
+        try {
+            codeSource = Paths.get(OpcodeFingerprint.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+        MessageDigest digest = newDigest();
+        // sorted by name so the digest does not depend on the order the file system lists them in
+        for (Map.Entry<String, byte[]> entry : readClasses(codeSource).entrySet()) {
+            digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+            ClassFileHasher.hashClass(entry.getValue(), digest);
+        }
+        codeDigest = digest.digest();
+    }
+
+    // fingerprint of the code together with the corpus file an opcode is tested with
+    public String of(File corpusFile) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(codeDigest);
+
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(corpusFile.toPath())) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return ClassFileHasher.toHex(digest.digest());
+    }
+
+    private static Map<String, byte[]> readClasses(Path codeSource) throws IOException {
+        Map<String, byte[]> classes = new TreeMap<>();
+        if (Files.isDirectory(codeSource)) {
+            try (Stream<Path> files = Files.walk(codeSource)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    if (file.toString().endsWith(".class")) {
+                        classes.put(codeSource.relativize(file).toString().replace(File.separatorChar, '/'),
+                                Files.readAllBytes(file));
+                    }
+                }
+            }
+        } else {
+            try (JarFile jar = new JarFile(codeSource.toFile())) {
+                Enumeration<JarEntry> entries = jar.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (entry.getName().endsWith(".class")) {
+                        try (InputStream in = jar.getInputStream(entry)) {
+                            classes.put(entry.getName(), in.readAllBytes());
+                        }
+                    }
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
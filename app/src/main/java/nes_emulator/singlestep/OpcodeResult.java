@@ -0,0 +1,30 @@
+package nes_emulator.singlestep;
+
+import java.util.List;
+
+// the outcome of running the cases for one opcode
+public class OpcodeResult {
+    public final String opcode;
+    public final int passed; // -1 if the opcode is not implemented
+    public final int total;
+    public final long nanos; // time spent running the cases, summed over the workers
+    public final boolean cached;
+    public final List<SingleStepFailure> failures; // the first failures, not necessarily all of them
+
+    public OpcodeResult(String opcode, int passed, int total, long nanos, boolean cached, List<SingleStepFailure> failures) {
+        this.opcode = opcode;
+        this.passed = passed;
+        this.total = total;
+        this.nanos = nanos;
+        this.cached = cached;
+        this.failures = failures;
+    }
+
+    public boolean isImplemented() {
+        return passed != -1;
+    }
+
+    public boolean isPassed() {
+        return passed == total;
+    }
+}
@@ -0,0 +1,54 @@
+package nes_emulator.singlestep;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+// results of earlier runs, stored as opcode=fingerprint passed total
+// a result is only reused while the opcode's fingerprint is unchanged, see OpcodeFingerprint
+public class ResultCache {
+    public static final String DEFAULT_FILE_NAME = ".results-cache";
+
+    private final File file;
+    private final Properties entries = new Properties();
+
+    public ResultCache(File file) throws IOException {
+        this.file = file;
+        if (file.isFile()) {
+            try (InputStream in = new FileInputStream(file)) {
+                entries.load(in);
+            }
+        }
+    }
+
+    // returns {passed, total} from the last run with the same fingerprint, or null
+    public int[] get(String opcode, String fingerprint) {
+        String entry = entries.getProperty(opcode);
+        if (entry == null) {
+            return null;
+        }
+        String[] parts = entry.split(" ");
+        if (parts.length != 3 || !parts[0].equals(fingerprint)) {
+            return null;
+        }
+        try {
+            return new int[]{Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public void put(String opcode, String fingerprint, int[] result) {
+        entries.setProperty(opcode, fingerprint + " " + result[0] + " " + result[1]);
+    }
+
+    public void save() throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            entries.store(out, "single-step results keyed by opcode fingerprint");
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package nes_emulator.singlestep;
+
+// layout of the binary single-step corpus, all values are big endian
+//
+// header:   magic "NSST", int version, int flags, int number of cases
+// per case: u8 name length, name bytes (UTF-8)
+//           initial registers then final registers, each u16 pc, u8 s, a, x, y, p
+//           initial ram then final ram, each u16 count followed by count (u16 address, u8 value)
+//           if FLAG_CYCLES is set: u16 count followed by count (u16 address, u8 value, u8 1 for a write)
+final class SingleStepBinaryFormat {
+    static final String EXTENSION = ".bin";
+
+    static final int MAGIC = ('N' << 24) | ('S' << 16) | ('S' << 8) | 'T';
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int NUM_CASES_OFFSET = 12;
+
+    static final int FLAG_CYCLES = 1;
+
+    private SingleStepBinaryFormat() {
+    }
+}
@@ -0,0 +1,114 @@
+package nes_emulator.singlestep;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// reads a corpus file written by SingleStepCorpusConverter through a memory mapping
+// cases are decoded into the reused SingleStepTest, so iterating does not allocate per case
+public class SingleStepBinaryReader implements SingleStepSource {
+    private final String filename;
+    private final MappedByteBuffer buffer;
+    private final boolean hasCycles;
+    private final int numCases;
+    private int casesRead;
+
+    public SingleStepBinaryReader(String filename) throws IOException {
+        this.filename = filename;
+        try (RandomAccessFile file = new RandomAccessFile(filename, "r");
+             FileChannel channel = file.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Corpus file is too large to map: " + filename);
+            }
+            // the mapping stays valid after the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.remaining() < SingleStepBinaryFormat.HEADER_SIZE || buffer.getInt() != SingleStepBinaryFormat.MAGIC) {
+            throw new IOException("Not a single-step corpus file: " + filename);
+        }
+        int version = buffer.getInt();
+        if (version != SingleStepBinaryFormat.VERSION) {
+            throw new IOException("Unsupported corpus version " + version + ": " + filename);
+        }
+        hasCycles = (buffer.getInt() & SingleStepBinaryFormat.FLAG_CYCLES) != 0;
+        numCases = buffer.getInt();
+    }
+
+    @Override
+    public int getNumCases() {
+        return numCases;
+    }
+
+    @Override
+    public int skip(int count) {
+        int skipped = 0;
+        while (skipped < count && casesRead < numCases) {
+            // name and the two register blocks
+            buffer.position(buffer.position() + 1 + (buffer.get(buffer.position()) & 0xFF) + 2 * 7);
+            // initial and final ram
+            for (int i = 0; i < 2; i++) {
+                int ramSize = buffer.getShort() & 0xFFFF;
+                buffer.position(buffer.position() + ramSize * 3);
+            }
+            if (hasCycles) {
+                int numCycles = buffer.getShort() & 0xFFFF;
+                buffer.position(buffer.position() + numCycles * 4);
+            }
+            casesRead++;
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean next(SingleStepTest test) throws IOException {
+        if (casesRead == numCases) {
+            return false;
+        }
+        test.clear();
+        test.setNameBytes(buffer, buffer.get() & 0xFF);
+        readRegisters(test.initialState);
+        readRegisters(test.finalState);
+        readRam(test.initialState);
+        readRam(test.finalState);
+        if (hasCycles) {
+            int count = buffer.getShort() & 0xFFFF;
+            for (int i = 0; i < count; i++) {
+                int address = buffer.getShort() & 0xFFFF;
+                int value = buffer.get() & 0xFF;
+                test.addCycle(address, value, buffer.get() != 0);
+            }
+        }
+        casesRead++;
+        return true;
+    }
+
+    private void readRegisters(SingleStepState state) {
+        state.pc = buffer.getShort() & 0xFFFF;
+        state.s = buffer.get() & 0xFF;
+        state.a = buffer.get() & 0xFF;
+        state.x = buffer.get() & 0xFF;
+        state.y = buffer.get() & 0xFF;
+        state.p = buffer.get() & 0xFF;
+    }
+
+    private void readRam(SingleStepState state) {
+        int count = buffer.getShort() & 0xFFFF;
+        for (int i = 0; i < count; i++) {
+            int address = buffer.getShort() & 0xFFFF;
+            state.addRam(address, buffer.get() & 0xFF);
+        }
+    }
+
+    @Override
+    public void close() {
+        // the mapping is released when the buffer is collected
+    }
+
+    @Override
+    public String toString() {
+        return filename;
+    }
+}
@@ -0,0 +1,116 @@
+package nes_emulator.singlestep;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+// converts the TomHarte nes6502 json files into the binary format described in SingleStepBinaryFormat
+// usage: SingleStepCorpusConverter <json directory> <output directory> [--no-cycles] [--max-cases=<n>]
+// --max-cases keeps only the first n cases of every file, e.g. for the fixture in src/test/resources/singlestep
+public class SingleStepCorpusConverter {
+    private static final String USAGE =
+            "usage: SingleStepCorpusConverter <json directory> <output directory> [--no-cycles] [--max-cases=<n>]";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println(USAGE);
+            System.exit(1);
+        }
+        File inputDirectory = new File(args[0]);
+        File outputDirectory = new File(args[1]);
+        boolean includeCycles = true;
+        int maxCases = Integer.MAX_VALUE;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--no-cycles")) {
+                includeCycles = false;
+            } else if (args[i].startsWith("--max-cases=")) {
+                maxCases = Integer.parseInt(args[i].substring("--max-cases=".length()));
+            } else {
+                System.err.println(USAGE);
+                System.exit(1);
+            }
+        }
+
+        File[] files = inputDirectory.listFiles((dir, name) -> name.endsWith(".json"));
+        if (files == null) {
+            throw new IOException("Not a directory: " + inputDirectory);
+        }
+        if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            throw new IOException("Could not create " + outputDirectory);
+        }
+
+        for (File file : files) {
+            String opcode = file.getName().substring(0, file.getName().length() - ".json".length());
+            File output = new File(outputDirectory, opcode + SingleStepBinaryFormat.EXTENSION);
+            int numCases = convert(file, output, includeCycles, maxCases);
+            System.out.println("Converted " + numCases + " cases from " + file + " to " + output);
+        }
+    }
+
+    // writes every case of the json file to output and returns the number of cases
+    public static int convert(File json, File output, boolean includeCycles) throws IOException {
+        return convert(json, output, includeCycles, Integer.MAX_VALUE);
+    }
+
+    // same as above, with only the first maxCases cases
+    public static int convert(File json, File output, boolean includeCycles, int maxCases) throws IOException {
+        int numCases = 0;
+        SingleStepTest test = new SingleStepTest();
+        try (SingleStepTestReader reader = new SingleStepTestReader(json.getPath());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(output)))) {
+            out.writeInt(SingleStepBinaryFormat.MAGIC);
+            out.writeInt(SingleStepBinaryFormat.VERSION);
+            out.writeInt(includeCycles ? SingleStepBinaryFormat.FLAG_CYCLES : 0);
+            out.writeInt(0); // number of cases, filled in at the end
+
+            while (numCases < maxCases && reader.next(test)) {
+                byte[] name = test.getName().getBytes(StandardCharsets.UTF_8);
+                if (name.length > 0xFF) {
+                    throw new IOException("Test name is too long in " + json + ": " + test.getName());
+                }
+                out.writeByte(name.length);
+                out.write(name);
+                writeRegisters(out, test.initialState);
+                writeRegisters(out, test.finalState);
+                writeRam(out, test.initialState);
+                writeRam(out, test.finalState);
+                if (includeCycles) {
+                    out.writeShort(test.numCycles);
+                    for (int i = 0; i < test.numCycles; i++) {
+                        out.writeShort(test.cycleAddresses[i]);
+                        out.writeByte(test.cycleValues[i]);
+                        out.writeByte(test.cycleWrites[i] ? 1 : 0);
+                    }
+                }
+                numCases++;
+            }
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(output, "rw")) {
+            file.seek(SingleStepBinaryFormat.NUM_CASES_OFFSET);
+            file.writeInt(numCases);
+        }
+        return numCases;
+    }
+
+    private static void writeRegisters(DataOutputStream out, SingleStepState state) throws IOException {
+        out.writeShort(state.pc);
+        out.writeByte(state.s);
+        out.writeByte(state.a);
+        out.writeByte(state.x);
+        out.writeByte(state.y);
+        out.writeByte(state.p);
+    }
+
+    private static void writeRam(DataOutputStream out, SingleStepState state) throws IOException {
+        out.writeShort(state.ramSize);
+        for (int i = 0; i < state.ramSize; i++) {
+            out.writeShort(state.ram[i][0]);
+            out.writeByte(state.ram[i][1]);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package nes_emulator.singlestep;
+
+import nes_emulator.nes.components.bus.BusRecorder;
+import nes_emulator.nes.components.cpu.CPU;
+import nes_emulator.nes.components.cpu.CPURegisterState;
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// compares the cpu against the final state of a test case, reused from case to case
+// a passing case does not allocate: the ram is checked against the memory's bitset of touched addresses,
+// and the touched addresses are only sorted when something was written outside the final state
+public class SingleStepDiff {
+    private final ArrayList<SingleStepMismatch> mismatches = new ArrayList<>();
+
+    // returns true if the cpu matches the expected state, otherwise the differences are in getMismatches()
+    public boolean compare(CPU cpu, SingleStepState expected) {
+        mismatches.clear();
+
+        CPURegisterState registers = cpu.getRegisters();
+        compareRegister(SingleStepMismatch.Field.PC, registers.PC, expected.pc);
+        compareRegister(SingleStepMismatch.Field.S, registers.S, expected.s);
+        compareRegister(SingleStepMismatch.Field.A, registers.A, expected.a);
+        compareRegister(SingleStepMismatch.Field.Y, registers.Y, expected.y);
+        compareRegister(SingleStepMismatch.Field.X, registers.X, expected.x);
+        compareRegister(SingleStepMismatch.Field.P, registers.getP(), expected.p);
+
+        CPUMemory memory = cpu.getCpuMemory();
+        int numTouched = 0;
+        for (int i = 0; i < expected.ramSize; i++) {
+            int address = expected.ram[i][0];
+            int value = expected.ram[i][1];
+            if (!memory.isTouched(address)) {
+                mismatches.add(new SingleStepMismatch(SingleStepMismatch.Field.RAM, address, value, SingleStepMismatch.NONE));
+                continue;
+            }
+            numTouched++;
+            int actual = memory.readByte(address);
+            if (actual != value) {
+                mismatches.add(new SingleStepMismatch(SingleStepMismatch.Field.RAM, address, value, actual));
+            }
+        }
+
+        if (numTouched != memory.getNumTouched()) {
+            int[] expectedAddresses = new int[expected.ramSize];
+            for (int i = 0; i < expected.ramSize; i++) {
+                expectedAddresses[i] = expected.ram[i][0];
+            }
+            Arrays.sort(expectedAddresses);
+            for (int address : memory.getTouchedAddresses()) {
+                if (Arrays.binarySearch(expectedAddresses, address) < 0) {
+                    mismatches.add(new SingleStepMismatch(SingleStepMismatch.Field.RAM, address,
+                            SingleStepMismatch.NONE, memory.readByte(address)));
+                }
+            }
+        }
+
+        return mismatches.isEmpty();
+    }
+
+    // compares the recorded bus accesses with the cycles of the test case, the differences are added to the
+    // ones from compare(), returns true if neither found any
+    // cases without cycles, e.g. from a binary corpus converted with --no-cycles, are not checked
+    public boolean compareCycles(BusRecorder recorder, SingleStepTest test) {
+        if (test.numCycles == 0) {
+            return mismatches.isEmpty();
+        }
+        int numCycles = Math.max(test.numCycles, recorder.getSize());
+        for (int i = 0; i < numCycles; i++) {
+            int expected = i < test.numCycles
+                    ? SingleStepMismatch.packCycle(test.cycleAddresses[i], test.cycleValues[i], test.cycleWrites[i])
+                    : SingleStepMismatch.NONE;
+            int actual = i < recorder.getSize()
+                    ? SingleStepMismatch.packCycle(recorder.getAddress(i), recorder.getValue(i), recorder.isWrite(i))
+                    : SingleStepMismatch.NONE;
+            if (expected != actual) {
+                mismatches.add(new SingleStepMismatch(SingleStepMismatch.Field.CYCLE, i, expected, actual));
+            }
+        }
+        return mismatches.isEmpty();
+    }
+
+    private void compareRegister(SingleStepMismatch.Field field, int actual, int expected) {
+        if (actual != expected) {
+            mismatches.add(new SingleStepMismatch(field, SingleStepMismatch.NONE, expected, actual));
+        }
+    }
+
+    // the differences found by the last compare(), only valid until the next one
+    public List<SingleStepMismatch> getMismatches() {
+        return mismatches;
+    }
+
+    // copies the differences out, for keeping after the next compare()
+    public SingleStepFailure toFailure(SingleStepTest test) {
+        return new SingleStepFailure(test.getName(), test.initialState.toString(), new ArrayList<>(mismatches));
+    }
+
+    // one line per difference
+    public void appendTo(StringBuilder builder) {
+        for (SingleStepMismatch mismatch : mismatches) {
+            builder.append(mismatch).append('\n');
+        }
+    }
+}
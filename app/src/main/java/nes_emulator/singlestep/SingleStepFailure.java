@@ -0,0 +1,16 @@
+package nes_emulator.singlestep;
+
+import java.util.List;
+
+// a failed test case, kept for the reports after the reused SingleStepTest has moved on
+public class SingleStepFailure {
+    public final String name;
+    public final String initialState; // SingleStepState.toString(), which is json
+    public final List<SingleStepMismatch> mismatches;
+
+    public SingleStepFailure(String name, String initialState, List<SingleStepMismatch> mismatches) {
+        this.name = name;
+        this.initialState = initialState;
+        this.mismatches = mismatches;
+    }
+}
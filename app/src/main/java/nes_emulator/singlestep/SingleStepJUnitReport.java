@@ -0,0 +1,94 @@
+package nes_emulator.singlestep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Locale;
+
+// JUnit XML with a testsuite per opcode holding a single testcase, the suites are written as the opcodes finish
+// the failure text lists the reported failing cases and what differed in each
+public class SingleStepJUnitReport implements SingleStepReport {
+    private final Writer writer;
+
+    public SingleStepJUnitReport(File file) throws IOException {
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        writer.write("<testsuites name=\"single-step\">\n");
+    }
+
+    @Override
+    public void add(OpcodeResult result) throws IOException {
+        String time = String.format(Locale.ROOT, "%.3f", result.nanos / 1e9);
+        boolean failed = result.isImplemented() && !result.isPassed();
+
+        StringBuilder builder = new StringBuilder();
+        builder.append("  <testsuite name=\"opcode ").append(result.opcode)
+                .append("\" tests=\"1\" failures=\"").append(failed ? 1 : 0)
+                .append("\" errors=\"0\" skipped=\"").append(result.isImplemented() ? 0 : 1)
+                .append("\" time=\"").append(time).append("\">\n");
+        builder.append("    <properties>\n");
+        builder.append("      <property name=\"cases\" value=\"").append(result.total).append("\"/>\n");
+        builder.append("      <property name=\"cached\" value=\"").append(result.cached).append("\"/>\n");
+        builder.append("    </properties>\n");
+        builder.append("    <testcase classname=\"single-step\" name=\"").append(result.opcode)
+                .append("\" time=\"").append(time).append("\">\n");
+
+        if (!result.isImplemented()) {
+            builder.append("      <skipped message=\"opcode is not implemented\"/>\n");
+        } else if (failed) {
+            int numFailed = result.total - result.passed;
+            builder.append("      <failure type=\"mismatch\" message=\"").append(numFailed).append(" of ")
+                    .append(result.total).append(" cases failed\">");
+            for (SingleStepFailure failure : result.failures) {
+                appendEscaped(builder, failure.name);
+                builder.append('\n');
+                appendEscaped(builder, failure.initialState);
+                builder.append('\n');
+                for (SingleStepMismatch mismatch : failure.mismatches) {
+                    builder.append("    ");
+                    appendEscaped(builder, mismatch.toString());
+                    builder.append('\n');
+                }
+            }
+            if (result.failures.size() < numFailed) {
+                builder.append(numFailed - result.failures.size()).append(" more not listed\n");
+            }
+            builder.append("</failure>\n");
+        }
+
+        builder.append("    </testcase>\n");
+        builder.append("  </testsuite>\n");
+        writer.write(builder.toString());
+    }
+
+    private static void appendEscaped(StringBuilder builder, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    builder.append("&amp;");
+                    break;
+                case '<':
+                    builder.append("&lt;");
+                    break;
+                case '>':
+                    builder.append("&gt;");
+                    break;
+                case '"':
+                    builder.append("&quot;");
+                    break;
+                default:
+                    builder.append(c);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.write("</testsuites>\n");
+        writer.close();
+    }
+}
@@ -0,0 +1,101 @@
+package nes_emulator.singlestep;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+// JSON lines: a "case" line per reported failing case, then an "opcode" line with the totals for the opcode
+public class SingleStepJsonReport implements SingleStepReport {
+    private final Writer writer;
+
+    public SingleStepJsonReport(File file) throws IOException {
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void add(OpcodeResult result) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (SingleStepFailure failure : result.failures) {
+            builder.append("{\"type\":\"case\",\"opcode\":\"").append(result.opcode).append("\",\"name\":");
+            appendString(builder, failure.name);
+            builder.append(",\"initial\":").append(failure.initialState).append(",\"mismatches\":[");
+            for (int i = 0; i < failure.mismatches.size(); i++) {
+                SingleStepMismatch mismatch = failure.mismatches.get(i);
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append("{\"field\":\"").append(mismatch.field).append('"');
+                if (mismatch.field == SingleStepMismatch.Field.CYCLE) {
+                    builder.append(",\"cycle\":").append(mismatch.address);
+                    builder.append(",\"expected\":");
+                    appendCycle(builder, mismatch.expected);
+                    builder.append(",\"actual\":");
+                    appendCycle(builder, mismatch.actual);
+                    builder.append('}');
+                    continue;
+                }
+                if (mismatch.field == SingleStepMismatch.Field.RAM) {
+                    builder.append(",\"address\":").append(mismatch.address);
+                }
+                builder.append(",\"expected\":");
+                appendValue(builder, mismatch.expected);
+                builder.append(",\"actual\":");
+                appendValue(builder, mismatch.actual);
+                builder.append('}');
+            }
+            builder.append("]}\n");
+        }
+
+        String status = !result.isImplemented() ? "skipped" : result.isPassed() ? "passed" : "failed";
+        builder.append("{\"type\":\"opcode\",\"opcode\":\"").append(result.opcode)
+                .append("\",\"status\":\"").append(status)
+                .append("\",\"passed\":").append(result.passed)
+                .append(",\"total\":").append(result.total)
+                .append(",\"reportedFailures\":").append(result.failures.size())
+                .append(",\"nanos\":").append(result.nanos)
+                .append(",\"cached\":").append(result.cached)
+                .append("}\n");
+        writer.write(builder.toString());
+    }
+
+    private static void appendValue(StringBuilder builder, int value) {
+        if (value == SingleStepMismatch.NONE) {
+            builder.append("null");
+        } else {
+            builder.append(value);
+        }
+    }
+
+    // same shape as the cycles in the corpus: [address, value, "read" or "write"]
+    private static void appendCycle(StringBuilder builder, int cycle) {
+        if (cycle == SingleStepMismatch.NONE) {
+            builder.append("null");
+            return;
+        }
+        builder.append('[').append(SingleStepMismatch.cycleAddress(cycle))
+                .append(',').append(SingleStepMismatch.cycleValue(cycle))
+                .append(SingleStepMismatch.isCycleWrite(cycle) ? ",\"write\"]" : ",\"read\"]");
+    }
+
+    private static void appendString(StringBuilder builder, String text) {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,66 @@
+package nes_emulator.singlestep;
+
+// one difference between the state the cpu ended in and the final state of a test case
+public class SingleStepMismatch {
+    public enum Field { PC, S, A, X, Y, P, RAM, CYCLE }
+
+    // address for registers, expected for addresses written but not in the final state,
+    // actual for addresses in the final state that were never written,
+    // and expected or actual for a cycle past the end of the other list
+    public static final int NONE = -1;
+
+    // for CYCLE the address is the index of the cycle, and expected and actual are bus accesses packed by packCycle
+
+    public final Field field;
+    public final int address;
+    public final int expected;
+    public final int actual;
+
+    public SingleStepMismatch(Field field, int address, int expected, int actual) {
+        this.field = field;
+        this.address = address;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public static int packCycle(int address, int value, boolean write) {
+        return (write ? 1 << 24 : 0) | (address & 0xFFFF) << 8 | (value & 0xFF);
+    }
+
+    public static int cycleAddress(int cycle) {
+        return (cycle >> 8) & 0xFFFF;
+    }
+
+    public static int cycleValue(int cycle) {
+        return cycle & 0xFF;
+    }
+
+    public static boolean isCycleWrite(int cycle) {
+        return (cycle & 1 << 24) != 0;
+    }
+
+    private static String cycleToString(int cycle) {
+        if (cycle == NONE) {
+            return "nothing";
+        }
+        return (isCycleWrite(cycle) ? "write " : "read ") + cycleValue(cycle) + " at " + cycleAddress(cycle);
+    }
+
+    @Override
+    public String toString() {
+        if (field == Field.CYCLE) {
+            return "cycle " + address + " is not the same: got " + cycleToString(actual)
+                    + " expected " + cycleToString(expected);
+        }
+        if (field != Field.RAM) {
+            return field + " is not the same: got " + actual + " expected " + expected;
+        }
+        if (expected == NONE) {
+            return "RAM[" + address + "] was written but is not in the final state: got " + actual;
+        }
+        if (actual == NONE) {
+            return "RAM[" + address + "] was never written: expected " + expected;
+        }
+        return "RAM[" + address + "] is not the same: got " + actual + " expected " + expected;
+    }
+}
@@ -0,0 +1,11 @@
+package nes_emulator.singlestep;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// a machine readable report of a run, written as the results come in
+public interface SingleStepReport extends Closeable {
+
+    // called once per opcode, in opcode order
+    void add(OpcodeResult result) throws IOException;
+}
@@ -0,0 +1,45 @@
+package nes_emulator.singlestep;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+// a file of single-step test cases, read one case at a time
+public interface SingleStepSource extends Closeable {
+
+    // reads the next case into test, returns false once there are no more cases
+    boolean next(SingleStepTest test) throws IOException;
+
+    // skips up to count cases, returns how many were skipped
+    default int skip(int count) throws IOException {
+        SingleStepTest scratch = new SingleStepTest();
+        int skipped = 0;
+        while (skipped < count && next(scratch)) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    // number of cases in the file if it is known without reading it, otherwise -1
+    default int getNumCases() {
+        return -1;
+    }
+
+    // opens <opcode>.bin from the directory if it was converted, otherwise <opcode>.json
+    static SingleStepSource open(String directory, String opcode) throws IOException {
+        File file = file(directory, opcode);
+        if (file.getName().endsWith(SingleStepBinaryFormat.EXTENSION)) {
+            return new SingleStepBinaryReader(file.getPath());
+        }
+        return new SingleStepTestReader(file.getPath());
+    }
+
+    // the file open() reads for the opcode
+    static File file(String directory, String opcode) {
+        File binary = new File(directory, opcode + SingleStepBinaryFormat.EXTENSION);
+        if (binary.isFile()) {
+            return binary;
+        }
+        return new File(directory, opcode + ".json");
+    }
+}
@@ -0,0 +1,59 @@
+package nes_emulator.singlestep;
+
+import java.util.Arrays;
+
+// the registers and ram of the "initial" or "final" part of a single-step test case
+// the arrays are reused from case to case, only the first ramSize entries of ram are valid
+public class SingleStepState {
+    public int pc;
+    public int s;
+    public int a;
+    public int x;
+    public int y;
+    public int p;
+
+    public int[][] ram = new int[16][2];
+    public int ramSize;
+
+    void clear() {
+        pc = 0;
+        s = 0;
+        a = 0;
+        x = 0;
+        y = 0;
+        p = 0;
+        ramSize = 0;
+    }
+
+    void addRam(int address, int value) {
+        if (ramSize == ram.length) {
+            int oldLength = ram.length;
+            ram = Arrays.copyOf(ram, oldLength * 2);
+            for (int i = oldLength; i < ram.length; i++) {
+                ram[i] = new int[2];
+            }
+        }
+        ram[ramSize][0] = address;
+        ram[ramSize][1] = value;
+        ramSize++;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\"pc\":").append(pc)
+                .append(",\"s\":").append(s)
+                .append(",\"a\":").append(a)
+                .append(",\"x\":").append(x)
+                .append(",\"y\":").append(y)
+                .append(",\"p\":").append(p)
+                .append(",\"ram\":[");
+        for (int i = 0; i < ramSize; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append('[').append(ram[i][0]).append(',').append(ram[i][1]).append(']');
+        }
+        return builder.append("]}").toString();
+    }
+}
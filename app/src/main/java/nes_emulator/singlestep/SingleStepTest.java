@@ -0,0 +1,62 @@
+package nes_emulator.singlestep;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// one case of a TomHarte nes6502 single-step test file
+// a single instance is filled again by SingleStepTestReader for every case
+public class SingleStepTest {
+    // the binary corpus only copies the name bytes, the String is built when getName() is called
+    private String name;
+    private byte[] nameBytes = new byte[16];
+    private int nameLength;
+    public final SingleStepState initialState = new SingleStepState();
+    public final SingleStepState finalState = new SingleStepState();
+
+    // the bus activity of the instruction, one entry per cycle
+    public int[] cycleAddresses = new int[8];
+    public int[] cycleValues = new int[8];
+    public boolean[] cycleWrites = new boolean[8];
+    public int numCycles;
+
+    public String getName() {
+        if (name == null) {
+            name = new String(nameBytes, 0, nameLength, StandardCharsets.UTF_8);
+        }
+        return name;
+    }
+
+    void setName(String name) {
+        this.name = name;
+    }
+
+    void setNameBytes(ByteBuffer source, int length) {
+        if (length > nameBytes.length) {
+            nameBytes = new byte[length];
+        }
+        source.get(nameBytes, 0, length);
+        nameLength = length;
+        name = null;
+    }
+
+    void clear() {
+        name = null;
+        nameLength = 0;
+        initialState.clear();
+        finalState.clear();
+        numCycles = 0;
+    }
+
+    void addCycle(int address, int value, boolean write) {
+        if (numCycles == cycleAddresses.length) {
+            cycleAddresses = Arrays.copyOf(cycleAddresses, numCycles * 2);
+            cycleValues = Arrays.copyOf(cycleValues, numCycles * 2);
+            cycleWrites = Arrays.copyOf(cycleWrites, numCycles * 2);
+        }
+        cycleAddresses[numCycles] = address;
+        cycleValues[numCycles] = value;
+        cycleWrites[numCycles] = write;
+        numCycles++;
+    }
+}
@@ -0,0 +1,322 @@
+package nes_emulator.singlestep;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+// streams the cases of a single-step test file one at a time
+// numbers are parsed straight into the primitive fields of a reused SingleStepTest, so memory use
+// does not depend on the size of the file
+public class SingleStepTestReader implements SingleStepSource {
+    private final Reader reader;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private boolean started;
+    private boolean finished;
+    private long offset; // characters consumed before the buffer, for error messages
+
+    private final StringBuilder stringBuilder = new StringBuilder();
+
+    public SingleStepTestReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    // the corpus is UTF-8 whatever the platform charset is
+    public SingleStepTestReader(String filename) throws IOException {
+        this(Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean next(SingleStepTest test) throws IOException {
+        if (finished) {
+            return false;
+        }
+        if (!started) {
+            expect('[');
+            started = true;
+            if (peekToken() == ']') {
+                read();
+                finished = true;
+                return false;
+            }
+        } else {
+            char separator = nextToken();
+            if (separator == ']') {
+                finished = true;
+                return false;
+            }
+            if (separator != ',') {
+                throw error("expected ',' or ']' but got '" + separator + "'");
+            }
+        }
+
+        test.clear();
+        expect('{');
+        if (peekToken() == '}') {
+            read();
+            return true;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            switch (key) {
+                case "name":
+                    test.setName(readString());
+                    break;
+                case "initial":
+                    readState(test.initialState);
+                    break;
+                case "final":
+                    readState(test.finalState);
+                    break;
+                case "cycles":
+                    readCycles(test);
+                    break;
+                default:
+                    skipValue();
+                    break;
+            }
+        } while (nextSeparator('}'));
+        return true;
+    }
+
+    private void readState(SingleStepState state) throws IOException {
+        expect('{');
+        if (peekToken() == '}') {
+            read();
+            return;
+        }
+        do {
+            String key = readString();
+            expect(':');
+            switch (key) {
+                case "pc":
+                    state.pc = readInt();
+                    break;
+                case "s":
+                    state.s = readInt();
+                    break;
+                case "a":
+                    state.a = readInt();
+                    break;
+                case "x":
+                    state.x = readInt();
+                    break;
+                case "y":
+                    state.y = readInt();
+                    break;
+                case "p":
+                    state.p = readInt();
+                    break;
+                case "ram":
+                    expect('[');
+                    if (peekToken() == ']') {
+                        read();
+                        break;
+                    }
+                    do {
+                        expect('[');
+                        int address = readInt();
+                        expect(',');
+                        int value = readInt();
+                        expect(']');
+                        state.addRam(address, value);
+                    } while (nextSeparator(']'));
+                    break;
+                default:
+                    skipValue();
+                    break;
+            }
+        } while (nextSeparator('}'));
+    }
+
+    private void readCycles(SingleStepTest test) throws IOException {
+        expect('[');
+        if (peekToken() == ']') {
+            read();
+            return;
+        }
+        do {
+            expect('[');
+            int address = readInt();
+            expect(',');
+            int value = readInt();
+            expect(',');
+            String type = readString();
+            expect(']');
+            test.addCycle(address, value, type.equals("write"));
+        } while (nextSeparator(']'));
+    }
+
+    // consumes a ',' and returns true, or consumes the closing character and returns false
+    private boolean nextSeparator(char close) throws IOException {
+        char c = nextToken();
+        if (c == ',') {
+            return true;
+        }
+        if (c == close) {
+            return false;
+        }
+        throw error("expected ',' or '" + close + "' but got '" + c + "'");
+    }
+
+    private int readInt() throws IOException {
+        char c = nextToken();
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            c = read();
+        }
+        if (c < '0' || c > '9') {
+            throw error("expected a number but got '" + c + "'");
+        }
+        int value = 0;
+        while (true) {
+            value = value * 10 + (c - '0');
+            if (!fill()) {
+                break;
+            }
+            c = buffer[position];
+            if (c < '0' || c > '9') {
+                break;
+            }
+            position++;
+        }
+        return negative ? -value : value;
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        stringBuilder.setLength(0);
+        while (true) {
+            char c = read();
+            if (c == '"') {
+                return stringBuilder.toString();
+            }
+            if (c == '\\') {
+                c = read();
+                switch (c) {
+                    case 'n':
+                        c = '\n';
+                        break;
+                    case 't':
+                        c = '\t';
+                        break;
+                    case 'r':
+                        c = '\r';
+                        break;
+                    case 'b':
+                        c = '\b';
+                        break;
+                    case 'f':
+                        c = '\f';
+                        break;
+                    case 'u':
+                        c = (char) Integer.parseInt(new String(new char[]{read(), read(), read(), read()}), 16);
+                        break;
+                    default:
+                        // '"', '\\' and '/' stand for themselves
+                        break;
+                }
+            }
+            stringBuilder.append(c);
+        }
+    }
+
+    // skips any json value, used for keys this reader does not know about
+    private void skipValue() throws IOException {
+        char c = peekToken();
+        if (c == '"') {
+            readString();
+        } else if (c == '{' || c == '[') {
+            int depth = 0;
+            boolean inString = false;
+            do {
+                c = read();
+                if (inString) {
+                    if (c == '\\') {
+                        read();
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                } else if (c == '"') {
+                    inString = true;
+                } else if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    depth--;
+                }
+            } while (depth > 0);
+        } else {
+            // number, true, false or null
+            while (fill()) {
+                c = buffer[position];
+                if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+                    break;
+                }
+                position++;
+            }
+        }
+    }
+
+    private void expect(char expected) throws IOException {
+        char c = nextToken();
+        if (c != expected) {
+            throw error("expected '" + expected + "' but got '" + c + "'");
+        }
+    }
+
+    // returns the next character that is not whitespace without consuming it
+    private char peekToken() throws IOException {
+        while (true) {
+            if (!fill()) {
+                throw error("unexpected end of file");
+            }
+            char c = buffer[position];
+            if (!Character.isWhitespace(c)) {
+                return c;
+            }
+            position++;
+        }
+    }
+
+    private char nextToken() throws IOException {
+        char c = peekToken();
+        position++;
+        return c;
+    }
+
+    private char read() throws IOException {
+        if (!fill()) {
+            throw error("unexpected end of file");
+        }
+        return buffer[position++];
+    }
+
+    // makes sure there is at least one character in the buffer, returns false at the end of the file
+    private boolean fill() throws IOException {
+        if (position < limit) {
+            return true;
+        }
+        offset += limit;
+        position = 0;
+        limit = reader.read(buffer, 0, buffer.length);
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Malformed test file at character " + (offset + position) + ": " + message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,148 @@
+package nes_emulator;
+
+import nes_emulator.nes.components.bus.BusRecorder;
+import nes_emulator.nes.components.cpu.CPU;
+import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.singlestep.SingleStepFailure;
+import nes_emulator.singlestep.SingleStepMismatch;
+import nes_emulator.singlestep.SingleStepSource;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.DynamicContainer;
+import org.junit.jupiter.api.DynamicNode;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+import org.junit.jupiter.api.TestReporter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+// runs the single-step corpus with one dynamic test per opcode, or per batch of cases with -Dsinglestep.batchSize
+// the corpus directory is -Dsinglestep.dir (gradle test -PsingleStepDir=<dir>)
+// without one the fixture in src/test/resources/singlestep is run, the first 4 cases of every official opcode
+// converted with gradle convertCorpus --args='<json directory> <output directory> --max-cases=4'
+// -Dsinglestep.cycles=true also checks the bus accesses against the cycles of every case
+// the tests run concurrently, see junit-platform.properties
+class SingleStepCorpusTest {
+    private static final String FIXTURE = "/singlestep";
+    private static final String DIRECTORY = System.getProperty("singlestep.dir", fixtureDirectory());
+    private static final int BATCH_SIZE = Integer.getInteger("singlestep.batchSize", 0);
+    private static final boolean VALIDATE_CYCLES = Boolean.getBoolean("singlestep.cycles");
+    private static final int MAX_LISTED_FAILURES = 10;
+    private static final int NUM_SLOWEST = 10;
+
+    private static final ThreadLocal<CPU> CPUS = ThreadLocal.withInitial(SingleStepCorpusTest::newCpu);
+    // the failures are in the assertion message, so the text dump is thrown away
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private static final Map<String, AtomicLong> opcodeNanos = new ConcurrentHashMap<>();
+
+    private static String fixtureDirectory() {
+        URL fixture = SingleStepCorpusTest.class.getResource(FIXTURE);
+        if (fixture == null) {
+            throw new IllegalStateException("the single-step fixture " + FIXTURE + " is not on the test classpath");
+        }
+        try {
+            return new File(fixture.toURI()).getPath();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static CPU newCpu() {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        if (VALIDATE_CYCLES) {
+            cpu.getMainBus().startRecording(new BusRecorder());
+        }
+        return cpu;
+    }
+
+    @TestFactory
+    Stream<DynamicNode> singleStepCorpus(TestReporter reporter) {
+        Assumptions.assumeTrue(new File(DIRECTORY).isDirectory(), "no single-step corpus in " + DIRECTORY);
+        return IntStream.range(0, 0x100)
+                .mapToObj(opcode -> String.format("%02x", opcode))
+                .filter(opcode -> SingleStepSource.file(DIRECTORY, opcode).isFile())
+                .map(opcode -> opcodeNode(opcode, reporter));
+    }
+
+    private static DynamicNode opcodeNode(String opcode, TestReporter reporter) {
+        int numCases = BATCH_SIZE > 0 ? countCases(opcode) : -1;
+        if (numCases < 0) {
+            return DynamicTest.dynamicTest("opcode " + opcode,
+                    () -> run(opcode, 0, Integer.MAX_VALUE, reporter));
+        }
+
+        List<DynamicTest> batches = new ArrayList<>();
+        for (int start = 0; start < numCases; start += BATCH_SIZE) {
+            int batchStart = start;
+            int batchEnd = Math.min(start + BATCH_SIZE, numCases);
+            batches.add(DynamicTest.dynamicTest("cases " + batchStart + "-" + (batchEnd - 1),
+                    () -> run(opcode, batchStart, BATCH_SIZE, reporter)));
+        }
+        return DynamicContainer.dynamicContainer("opcode " + opcode, batches);
+    }
+
+    private static int countCases(String opcode) {
+        try (SingleStepSource source = SingleStepSource.open(DIRECTORY, opcode)) {
+            return source.getNumCases();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void run(String opcode, int start, int length, TestReporter reporter) throws IOException {
+        List<SingleStepFailure> failures = new ArrayList<>();
+        long startTime = System.nanoTime();
+        int[] result;
+        try (SingleStepSource source = SingleStepSource.open(DIRECTORY, opcode)) {
+            source.skip(start);
+            result = App.runTests(CPUS.get(), source, length, NO_OUTPUT, failures, MAX_LISTED_FAILURES);
+        }
+        long nanos = System.nanoTime() - startTime;
+        opcodeNanos.computeIfAbsent(opcode, key -> new AtomicLong()).addAndGet(nanos);
+        reporter.publishEntry("opcode " + opcode, String.format("%d cases in %.1f ms", result[1], nanos / 1e6));
+
+        Assumptions.assumeTrue(result[0] != -1, "opcode " + opcode + " is not implemented");
+        if (result[0] != result[1]) {
+            StringBuilder message = new StringBuilder();
+            message.append(result[1] - result[0]).append(" of ").append(result[1]).append(" cases failed\n");
+            for (SingleStepFailure failure : failures) {
+                message.append(failure.name).append('\n');
+                for (SingleStepMismatch mismatch : failure.mismatches) {
+                    message.append("    ").append(mismatch).append('\n');
+                }
+            }
+            Assertions.fail(message.toString());
+        }
+    }
+
+    // published like the per-opcode timings, printing would interleave with the tests still running
+    @AfterAll
+    static void publishSlowestOpcodes(TestReporter reporter) {
+        if (opcodeNanos.isEmpty()) {
+            return;
+        }
+        String slowest = opcodeNanos.entrySet().stream()
+                .sorted((first, second) -> Long.compare(second.getValue().get(), first.getValue().get()))
+                .limit(NUM_SLOWEST)
+                .map(entry -> String.format("%s %.1f ms", entry.getKey(), entry.getValue().get() / 1e6))
+                .collect(Collectors.joining(", "));
+        reporter.publishEntry("slowest opcodes", slowest);
+    }
+}
@@ -0,0 +1,69 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+
+// executing an instruction reuses the CPU's decode scratch state, so once the code is compiled
+// a loop of loads, stores, arithmetic, shifts, branches and a subroutine call allocates nothing
+class CPUAllocationTest {
+    private static final int PROGRAM = 0x0400;
+    private static final int SUBROUTINE = 0x0480;
+    private static final int WARMUP_INSTRUCTIONS = 2_000_000;
+    private static final int MEASURED_INSTRUCTIONS = 5_000_000;
+
+    // a few objects, e.g. from a JIT deoptimization, are allowed, one per instruction is not
+    private static final double MAX_BYTES_PER_INSTRUCTION = 0.01;
+
+    @Test
+    void executingInstructionsDoesNotAllocate() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "no per-thread allocation counter");
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled(),
+                "no per-thread allocation counter");
+
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        CPUMemory memory = cpu.getCpuMemory();
+        int[] program = {
+                0xA9, 0x01,             // LDA #$01
+                0x65, 0x10,             // ADC $10
+                0x85, 0x11,             // STA $11
+                0x20, 0x80, 0x04,       // JSR $0480
+                0xE8,                   // INX
+                0xD0, 0xF4,             // BNE $0400
+                0x4C, 0x00, 0x04,       // JMP $0400
+        };
+        int[] subroutine = {
+                0x2A,                   // ROL A
+                0xB4, 0x11,             // LDY $11,X
+                0x60,                   // RTS
+        };
+        for (int i = 0; i < program.length; i++) {
+            memory.writeByte(PROGRAM + i, program[i]);
+        }
+        for (int i = 0; i < subroutine.length; i++) {
+            memory.writeByte(SUBROUTINE + i, subroutine[i]);
+        }
+        cpu.getRegisters().PC = PROGRAM;
+
+        for (int i = 0; i < WARMUP_INSTRUCTIONS; i++) {
+            cpu.executeNextCmd();
+        }
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_INSTRUCTIONS; i++) {
+            cpu.executeNextCmd();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        Assertions.assertFalse(cpu.isJammed());
+        double bytesPerInstruction = (double) allocated / MEASURED_INSTRUCTIONS;
+        Assertions.assertTrue(bytesPerInstruction < MAX_BYTES_PER_INSTRUCTION,
+                allocated + " bytes allocated over " + MEASURED_INSTRUCTIONS + " instructions");
+    }
+}
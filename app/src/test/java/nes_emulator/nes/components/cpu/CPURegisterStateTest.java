@@ -0,0 +1,190 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// N, Z, C and V are kept lazily, these check that the packed P always reads back what the flags should be
+class CPURegisterStateTest {
+    private static final int PROGRAM = 0x0200;
+    private static final int OPERAND = 0x10;
+
+    private static final int ADC_IMMEDIATE = 0x69;
+    private static final int SBC_IMMEDIATE = 0xE9;
+    private static final int BIT_ZEROPAGE = 0x24;
+    private static final int PHP = 0x08;
+    private static final int PLP = 0x28;
+
+    private static final int FLAG_C = 0x01;
+    private static final int FLAG_Z = 0x02;
+    private static final int FLAG_B = 0x10;
+    private static final int FLAG_UNUSED = 0x20;
+    private static final int FLAG_V = 0x40;
+    private static final int FLAG_N = 0x80;
+
+    @Test
+    void setPReadsBack() {
+        CPURegisterState registers = new CPURegisterState();
+        for (int p = 0; p < 0x100; p++) {
+            registers.setP(p);
+            Assertions.assertEquals(p, registers.getP(), hex(p));
+            Assertions.assertEquals(p & 1, registers.getStatusC(), hex(p));
+            Assertions.assertEquals((p >> 1) & 1, registers.getStatusZ(), hex(p));
+            Assertions.assertEquals((p >> 2) & 1, registers.getStatusI(), hex(p));
+            Assertions.assertEquals((p >> 3) & 1, registers.getStatusD(), hex(p));
+            Assertions.assertEquals((p >> 4) & 1, registers.getStatusB(), hex(p));
+            Assertions.assertEquals((p >> 6) & 1, registers.getStatusV(), hex(p));
+            Assertions.assertEquals((p >> 7) & 1, registers.getStatusN(), hex(p));
+        }
+    }
+
+    // any non-zero value sets a flag, without touching the other bits of P
+    @Test
+    void flagSettersOnlySetTheirBit() {
+        CPURegisterState registers = new CPURegisterState();
+        for (int value : new int[]{1, 2, 0x80, 0x100, 0x1FF, -1}) {
+            registers.setP(0);
+            registers.setStatusC(value);
+            Assertions.assertEquals(FLAG_C, registers.getP(), hex(value));
+            registers.setP(0);
+            registers.setStatusV(value);
+            Assertions.assertEquals(FLAG_V, registers.getP(), hex(value));
+            registers.setP(0);
+            registers.setStatusN(value);
+            Assertions.assertEquals(FLAG_N, registers.getP(), hex(value));
+            registers.setP(0);
+            registers.setStatusZ(value);
+            Assertions.assertEquals(FLAG_Z, registers.getP(), hex(value));
+        }
+        registers.setP(0xFF);
+        registers.setStatusC(0);
+        registers.setStatusV(0);
+        registers.setStatusN(0);
+        registers.setStatusZ(0);
+        Assertions.assertEquals(0xFF & ~(FLAG_C | FLAG_V | FLAG_N | FLAG_Z), registers.getP());
+    }
+
+    @Test
+    void constructorSetsP() {
+        for (int p = 0; p < 0x100; p++) {
+            Assertions.assertEquals(p, new CPURegisterState(0, 0, 0, 0, 0xFF, p).getP(), hex(p));
+        }
+    }
+
+    @Test
+    void phpPushesPWithBAndUnusedSet() {
+        CPU cpu = newCpu();
+        for (int p = 0; p < 0x100; p++) {
+            CPURegisterState registers = cpu.getRegisters();
+            registers.S = 0xFF;
+            registers.setP(p);
+            run(cpu, PHP);
+            Assertions.assertEquals(p | FLAG_B | FLAG_UNUSED, cpu.getCpuMemory().readByte(0x01FF), hex(p));
+            Assertions.assertEquals(p, registers.getP(), hex(p));
+        }
+    }
+
+    @Test
+    void plpPullsPWithoutB() {
+        CPU cpu = newCpu();
+        for (int pulled = 0; pulled < 0x100; pulled++) {
+            CPURegisterState registers = cpu.getRegisters();
+            registers.S = 0xFE;
+            registers.setP(~pulled & 0xFF);
+            cpu.getCpuMemory().writeByte(0x01FF, pulled);
+            run(cpu, PLP);
+            Assertions.assertEquals((pulled & ~FLAG_B) | FLAG_UNUSED, registers.getP(), hex(pulled));
+        }
+    }
+
+    @Test
+    void phpAfterPlpRoundTrips() {
+        CPU cpu = newCpu();
+        for (int pulled = 0; pulled < 0x100; pulled++) {
+            CPURegisterState registers = cpu.getRegisters();
+            registers.S = 0xFE;
+            cpu.getCpuMemory().writeByte(0x01FF, pulled);
+            run(cpu, PLP);
+            run(cpu, PHP);
+            Assertions.assertEquals(pulled | FLAG_B | FLAG_UNUSED, cpu.getCpuMemory().readByte(0x01FF), hex(pulled));
+        }
+    }
+
+    @Test
+    void bitSetsNVAndZ() {
+        CPU cpu = newCpu();
+        CPURegisterState registers = cpu.getRegisters();
+        for (int a = 0; a < 0x100; a++) {
+            for (int value = 0; value < 0x100; value++) {
+                // the flags BIT leaves alone start out as the opposite of what BIT sets
+                int before = (a & 0b0011_1101) | ((a & value) == 0 ? 0 : FLAG_Z) | (~value & (FLAG_N | FLAG_V));
+                registers.A = a;
+                registers.setP(before);
+                cpu.getCpuMemory().writeByte(OPERAND, value);
+                run(cpu, BIT_ZEROPAGE, OPERAND);
+
+                int expected = (before & ~(FLAG_N | FLAG_V | FLAG_Z)) | (value & (FLAG_N | FLAG_V))
+                        | ((a & value) == 0 ? FLAG_Z : 0);
+                Assertions.assertEquals(expected, registers.getP(), "BIT A=" + hex(a) + " M=" + hex(value));
+                Assertions.assertEquals(a, registers.A);
+            }
+        }
+    }
+
+    @Test
+    void adcSetsPackedFlags() {
+        checkAddition(ADC_IMMEDIATE, false);
+    }
+
+    @Test
+    void sbcSetsPackedFlags() {
+        checkAddition(SBC_IMMEDIATE, true);
+    }
+
+    // SBC is A + ~M + C, so both are checked against the same binary addition
+    private static void checkAddition(int opcode, boolean subtract) {
+        CPU cpu = newCpu();
+        CPURegisterState registers = cpu.getRegisters();
+        for (int a = 0; a < 0x100; a++) {
+            for (int value = 0; value < 0x100; value++) {
+                for (int carry = 0; carry < 2; carry++) {
+                    // I, D and the unused bits ride along and must survive
+                    int before = ((a ^ value) & 0b0011_1100) | carry;
+                    registers.A = a;
+                    registers.setP(before);
+                    run(cpu, opcode, value);
+
+                    int operand = subtract ? value ^ 0xFF : value;
+                    int sum = a + operand + carry;
+                    int result = sum & 0xFF;
+                    int expected = (before & 0b0011_1100)
+                            | (sum > 0xFF ? FLAG_C : 0)
+                            | (result == 0 ? FLAG_Z : 0)
+                            | ((a ^ result) & (operand ^ result) & 0x80) >> 1
+                            | (result & FLAG_N);
+                    String message = (subtract ? "SBC" : "ADC") + " A=" + hex(a) + " M=" + hex(value) + " C=" + carry;
+                    Assertions.assertEquals(result, registers.A, message);
+                    Assertions.assertEquals(expected, registers.getP(), message);
+                }
+            }
+        }
+    }
+
+    private static CPU newCpu() {
+        return new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+    }
+
+    // runs a single instruction at PROGRAM
+    private static void run(CPU cpu, int... bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            cpu.getCpuMemory().writeByte(PROGRAM + i, bytes[i]);
+        }
+        cpu.getRegisters().PC = PROGRAM;
+        cpu.executeNextCmd();
+    }
+
+    private static String hex(int value) {
+        return String.format("$%02X", value);
+    }
+}
@@ -0,0 +1,116 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.nes.components.memory.PRGRAM;
+import nes_emulator.nes.components.memory.PRGROM;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// a cached instruction has to be decoded again once the bytes it came from change,
+// whether they were written over or the page now maps a different memory
+class DecodeCacheTest {
+    private static final int PROGRAM = 0x0200;
+
+    @Test
+    void overwrittenOpcodeRunsTheNewInstruction() {
+        CPU cpu = newCpu();
+        write(cpu, PROGRAM, 0xA9, 0x11);                // LDA #$11
+        runTwice(cpu, PROGRAM);
+        Assertions.assertEquals(0x11, cpu.getRegisters().A);
+        Assertions.assertTrue(cpu.getDecodeCache().getHits() > 0, "the instruction was not cached");
+
+        write(cpu, PROGRAM, 0xA2, 0x22);                // LDX #$22
+        cpu.getRegisters().PC = PROGRAM;
+        cpu.executeNextCmd();
+        Assertions.assertEquals(0x22, cpu.getRegisters().X);
+        Assertions.assertEquals(0x11, cpu.getRegisters().A);
+        Assertions.assertEquals(PROGRAM + 2, cpu.getRegisters().PC);
+        Assertions.assertEquals(1, cpu.getDecodeCache().getInvalidations());
+    }
+
+    @Test
+    void overwrittenOperandIsReadAgain() {
+        CPU cpu = newCpu();
+        write(cpu, PROGRAM, 0xAD, 0x00, 0x03);          // LDA $0300
+        cpu.getCpuMemory().writeByte(0x0300, 0x33);
+        cpu.getCpuMemory().writeByte(0x0400, 0x44);
+        runTwice(cpu, PROGRAM);
+        Assertions.assertEquals(0x33, cpu.getRegisters().A);
+
+        write(cpu, PROGRAM + 2, 0x04);                  // LDA $0400
+        cpu.getRegisters().PC = PROGRAM;
+        cpu.executeNextCmd();
+        Assertions.assertEquals(0x44, cpu.getRegisters().A);
+    }
+
+    // a write next to the code changes the page generation, but the instruction is still the same
+    @Test
+    void writeNextToTheCodeKeepsTheEntry() {
+        CPU cpu = newCpu();
+        write(cpu, PROGRAM, 0xA9, 0x11);                // LDA #$11
+        runTwice(cpu, PROGRAM);
+        cpu.getCpuMemory().writeByte(PROGRAM + 0x80, 0x55);
+
+        long hits = cpu.getDecodeCache().getHits();
+        cpu.getRegisters().PC = PROGRAM;
+        cpu.executeNextCmd();
+        Assertions.assertEquals(hits + 1, cpu.getDecodeCache().getHits());
+        Assertions.assertEquals(0, cpu.getDecodeCache().getInvalidations());
+    }
+
+    // the program writes the operand of its own LDA #, each pass has to load the value written by the last one
+    @Test
+    void selfModifyingLoopLoadsEveryNewOperand() {
+        CPU cpu = newCpu();
+        write(cpu, PROGRAM,
+                0xA9, 0x00,                             // LDA #$00
+                0x18,                                   // CLC
+                0x69, 0x01,                             // ADC #$01
+                0x8D, 0x01, 0x02,                       // STA $0201
+                0x4C, 0x00, 0x02);                      // JMP $0200
+        cpu.getRegisters().PC = PROGRAM;
+        for (int pass = 0; pass < 300; pass++) {
+            cpu.executeNextCmd();
+            Assertions.assertEquals(pass & 0xFF, cpu.getRegisters().A, "pass " + pass);
+            for (int i = 0; i < 4; i++) {
+                cpu.executeNextCmd();
+            }
+        }
+        Assertions.assertTrue(cpu.getDecodeCache().getInvalidations() > 0);
+    }
+
+    @Test
+    void remappedPageRunsTheNewMemory() {
+        CPU cpu = newCpu();
+        write(cpu, 0x8000, 0xA9, 0x11);                 // LDA #$11
+        runTwice(cpu, 0x8000);
+
+        byte[] rom = new byte[0x8000];
+        rom[0] = (byte) 0xA0;                           // LDY #$22
+        rom[1] = 0x22;
+        cpu.getMainBus().mapPRG(new PRGRAM(), new PRGROM(rom));
+        cpu.getRegisters().PC = 0x8000;
+        cpu.executeNextCmd();
+        Assertions.assertEquals(0x22, cpu.getRegisters().Y);
+        Assertions.assertEquals(0x11, cpu.getRegisters().A);
+    }
+
+    private static CPU newCpu() {
+        return new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+    }
+
+    private static void write(CPU cpu, int addr, int... bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            cpu.getCpuMemory().writeByte(addr + i, bytes[i]);
+        }
+    }
+
+    // the first run decodes and caches the instruction, the second one hits
+    private static void runTwice(CPU cpu, int pc) {
+        for (int i = 0; i < 2; i++) {
+            cpu.getRegisters().PC = pc;
+            cpu.executeNextCmd();
+        }
+    }
+}
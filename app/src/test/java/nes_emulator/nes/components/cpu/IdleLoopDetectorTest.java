@@ -0,0 +1,99 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.bus.BusDevice;
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// runCycles with the detector has to end every budget in the same cycles, PC and registers as without it,
+// whether the loop is skipped or, like a loop polling a device, has to keep running
+class IdleLoopDetectorTest {
+    private static final int PROGRAM = 0x0200;
+    private static final int DEVICE_START = 0x2000;
+    private static final int DEVICE_END = 0x3FFF;
+    // the budgets runCycles is called with, a frame, odd sizes and budgets shorter than one iteration
+    private static final long[] BUDGETS = {29781, 1, 2, 3, 7, 100, 29780, 12345, 5, 29782, 1000000, 4};
+
+    // a status register that sets bit 7 on every 1000th read, like the vblank flag in $2002
+    private static final class PollingDevice implements BusDevice {
+        int reads;
+
+        @Override
+        public int readByte(int addr) {
+            reads++;
+            return reads % 1000 == 0 ? 0x80 : 0x00;
+        }
+
+        @Override
+        public void writeByte(int addr, int val) {
+        }
+    }
+
+    @Test
+    void jumpToItselfIsSkipped() {
+        int[] program = {
+                0x4C, 0x00, 0x02,       // JMP $0200
+        };
+        Assertions.assertTrue(compare(program, false) > 0, "JMP * was not skipped");
+    }
+
+    @Test
+    void loopOnAnUnchangingValueIsSkipped() {
+        int[] program = {
+                0xA5, 0x10,             // LDA $10
+                0xD0, 0xFC,             // BNE $0200
+        };
+        Assertions.assertTrue(compare(program, false) > 0, "LDA $10 BNE * was not skipped");
+    }
+
+    @Test
+    void loopPollingADeviceIsNeverSkipped() {
+        int[] program = {
+                0xAD, 0x02, 0x20,       // LDA $2002
+                0x10, 0xFB,             // BPL $0200
+                0xE8,                   // INX
+                0x4C, 0x00, 0x02,       // JMP $0200
+        };
+        Assertions.assertEquals(0, compare(program, true));
+    }
+
+    // runs the program with and without the detector and returns the loops the detector skipped
+    private static long compare(int[] program, boolean polling) {
+        CPU detected = newCpu(program, polling);
+        CPU interpreted = newCpu(program, polling);
+        interpreted.setIdleLoopDetector(null);
+        for (long budget : BUDGETS) {
+            long detectedOver = detected.runCycles(budget);
+            long interpretedOver = interpreted.runCycles(budget);
+            String name = "after a budget of " + budget;
+            Assertions.assertEquals(interpretedOver, detectedOver, name);
+            Assertions.assertEquals(interpreted.getCycles(), detected.getCycles(), name + " cycles");
+            CPURegisterState expected = interpreted.getRegisters();
+            CPURegisterState actual = detected.getRegisters();
+            Assertions.assertEquals(expected.PC, actual.PC, name + " PC");
+            Assertions.assertEquals(expected.A, actual.A, name + " A");
+            Assertions.assertEquals(expected.X, actual.X, name + " X");
+            Assertions.assertEquals(expected.Y, actual.Y, name + " Y");
+            Assertions.assertEquals(expected.S, actual.S, name + " S");
+            Assertions.assertEquals(expected.getP(), actual.getP(), name + " P");
+        }
+        if (polling) {
+            Assertions.assertTrue(detected.getRegisters().X > 0, "the device never set bit 7");
+        }
+        return detected.getIdleLoopDetector().getLoopsSkipped();
+    }
+
+    private static CPU newCpu(int[] program, boolean polling) {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        for (int i = 0; i < program.length; i++) {
+            cpu.getCpuMemory().writeByte(PROGRAM + i, program[i]);
+        }
+        cpu.getCpuMemory().writeByte(0x10, 0x01);
+        if (polling) {
+            cpu.getMainBus().mapDevice(DEVICE_START, DEVICE_END, new PollingDevice());
+        }
+        cpu.getRegisters().PC = PROGRAM;
+        return cpu;
+    }
+}
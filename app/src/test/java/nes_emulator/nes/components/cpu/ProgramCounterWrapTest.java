@@ -0,0 +1,107 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.App;
+import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.singlestep.SingleStepDiff;
+import nes_emulator.singlestep.SingleStepState;
+import nes_emulator.singlestep.SingleStepTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+// the PC wraps from $FFFF to $0000 like on the 6502, however an instruction moves it
+class ProgramCounterWrapTest {
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+    private static final int FLAG_Z = 0x02;
+
+    // BNE $0010 with Z set at $FFFE falls through to $0000
+    @Test
+    void branchNotTakenAtTheTopWraps() {
+        int[][] ram = {{0xFFFE, 0xD0}, {0xFFFF, 0x10}};
+        SingleStepTest test = new SingleStepTest();
+        setState(test.initialState, 0xFFFE, 0xFD, 0x24 | FLAG_Z, ram);
+        setState(test.finalState, 0x0000, 0xFD, 0x24 | FLAG_Z, ram);
+        checkCase(test);
+    }
+
+    // BNE $000F with Z set at $FFFD falls through to $FFFF, a remainder by $FFFF would have made it $0000
+    @Test
+    void branchNotTakenBeforeTheLastByteEndsOnIt() {
+        int[][] ram = {{0xFFFD, 0xD0}, {0xFFFE, 0x10}};
+        SingleStepTest test = new SingleStepTest();
+        setState(test.initialState, 0xFFFD, 0xFD, 0x24 | FLAG_Z, ram);
+        setState(test.finalState, 0xFFFF, 0xFD, 0x24 | FLAG_Z, ram);
+        checkCase(test);
+    }
+
+    // RTS pulls $FFFF and continues at $0000
+    @Test
+    void returnToTheTopWraps() {
+        int[][] ram = {{0x01FC, 0xFF}, {0x01FD, 0xFF}, {0x0200, 0x60}};
+        SingleStepTest test = new SingleStepTest();
+        setState(test.initialState, 0x0200, 0xFB, 0x24, ram);
+        setState(test.finalState, 0x0000, 0xFD, 0x24, ram);
+        checkCase(test);
+    }
+
+    // NOP in the last byte continues at $0000
+    @Test
+    void instructionInTheLastByteWraps() {
+        int[][] ram = {{0xFFFF, 0xEA}};
+        SingleStepTest test = new SingleStepTest();
+        setState(test.initialState, 0xFFFF, 0xFD, 0x24, ram);
+        setState(test.finalState, 0x0000, 0xFD, 0x24, ram);
+        checkCase(test);
+    }
+
+    // BCS at $FFFD, never taken as INX leaves C clear, INX at $FFFF and JMP $FFFD at $0000, the branch is compiled
+    // into a block that falls through to $FFFF, and the interpreter wraps the INX to $0000
+    @Test
+    void recompiledBranchBeforeTheLastByteEndsOnIt() {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        cpu.setIdleLoopDetector(null);
+        Recompiler recompiler = new Recompiler(2);
+        cpu.setRecompiler(recompiler);
+        CPUMemory memory = cpu.getCpuMemory();
+        int[] program = {0xB0, 0x10, 0xE8, 0x4C, 0xFD, 0xFF};
+        for (int i = 0; i < program.length; i++) {
+            memory.writeByte((0xFFFD + i) & 0xFFFF, program[i]);
+        }
+        cpu.getRegisters().PC = 0xFFFD;
+        cpu.getRegisters().setP(0x24);
+        // a pass is 2 + 2 + 3 cycles and runs the INX once
+        for (int i = 1; i <= 300; i++) {
+            cpu.runCycles(7);
+            Assertions.assertEquals(0xFFFD, cpu.getRegisters().PC);
+            Assertions.assertEquals(i & 0xFF, cpu.getRegisters().X, "INX skipped in pass " + i);
+        }
+        Assertions.assertTrue(recompiler.getBlockRuns() > 0, "the branch was not compiled");
+    }
+
+    private static void checkCase(SingleStepTest test) {
+        // once without and once with the instruction in the decode cache
+        for (boolean cached : new boolean[]{false, true}) {
+            CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+            if (!cached) {
+                cpu.setDecodeCache(null);
+            }
+            SingleStepDiff diff = new SingleStepDiff();
+            Assertions.assertTrue(App.runTest(cpu, test, diff, NO_OUTPUT), () -> diff.getMismatches().toString());
+            Assertions.assertTrue(App.runTest(cpu, test, diff, NO_OUTPUT), () -> diff.getMismatches().toString());
+        }
+    }
+
+    private static void setState(SingleStepState state, int pc, int s, int p, int[][] ram) {
+        state.pc = pc;
+        state.s = s;
+        state.a = 0;
+        state.x = 0;
+        state.y = 0;
+        state.p = p;
+        state.ram = ram;
+        state.ramSize = ram.length;
+    }
+}
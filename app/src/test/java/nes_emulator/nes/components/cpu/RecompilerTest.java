@@ -0,0 +1,214 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.bus.BusDevice;
+import nes_emulator.nes.components.bus.MainBus;
+import nes_emulator.nes.components.memory.CPUMemory;
+import nes_emulator.nes.components.memory.Memory;
+import nes_emulator.nes.components.memory.PRGRAM;
+import nes_emulator.nes.components.memory.PRGROM;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+// random programs run once interpreted and once with a recompiler that compiles everything it can,
+// and both runs have to end in the same registers, cycles, memory and device state
+// the code sits in internal ram, PRG-ROM or PRG-RAM, next to a device whose reads change its state
+// and zero page pointers that often point at it, so blocks side exit in the middle
+class RecompilerTest {
+    private static final int SEEDS = 200;
+    private static final int PROGRAM_BYTES = 120;
+    private static final int DEVICE_START = 0x2000;
+    private static final int DEVICE_END = 0x3FFF;
+
+    // stores with an absolute address that the self-modifying programs point into their own code
+    private static final int[] CODE_STORES = {
+            0x8D, // STA abs
+            0x8E, // STX abs
+            0x8C, // STY abs
+            0x9D, // STA abs,X
+            0x99, // STA abs,Y
+            0xEE, // INC abs
+            0xCE, // DEC abs
+            0x2E, // ROL abs
+    };
+
+    private enum Layout {
+        RAM(0x8000),
+        PRG_ROM(0x8000),
+        PRG_RAM(0x6000);
+
+        final int start;
+
+        Layout(int start) {
+            this.start = start;
+        }
+    }
+
+    // a device at $2000-$3FFF whose reads depend on every earlier access
+    private static final class CountingDevice implements BusDevice {
+        int state;
+
+        @Override
+        public int readByte(int addr) {
+            state += 3;
+            return state & 0xFF;
+        }
+
+        @Override
+        public void writeByte(int addr, int val) {
+            state ^= val;
+        }
+    }
+
+    @Test
+    void compiledRamCodeMatchesTheInterpreter() {
+        checkAgainstInterpreter(Layout.RAM, false);
+    }
+
+    @Test
+    void compiledPrgRomCodeMatchesTheInterpreter() {
+        checkAgainstInterpreter(Layout.PRG_ROM, false);
+    }
+
+    @Test
+    void compiledPrgRamCodeMatchesTheInterpreter() {
+        checkAgainstInterpreter(Layout.PRG_RAM, false);
+    }
+
+    @Test
+    void selfModifyingRamCodeMatchesTheInterpreter() {
+        checkAgainstInterpreter(Layout.RAM, true);
+    }
+
+    @Test
+    void selfModifyingPrgRamCodeMatchesTheInterpreter() {
+        checkAgainstInterpreter(Layout.PRG_RAM, true);
+    }
+
+    // stores into rom are ignored, so the code never changes and the blocks stay valid
+    @Test
+    void storesIntoPrgRomCodeMatchTheInterpreter() {
+        checkAgainstInterpreter(Layout.PRG_ROM, true);
+    }
+
+    private static void checkAgainstInterpreter(Layout layout, boolean selfModifying) {
+        long blocksCompiled = 0;
+        long blockRuns = 0;
+        long invalidations = 0;
+        for (int seed = 0; seed < SEEDS; seed++) {
+            String interpreted = run(layout, selfModifying, seed, null);
+            Recompiler recompiler = new Recompiler(2);
+            String compiled = run(layout, selfModifying, seed, recompiler);
+            Assertions.assertEquals(interpreted, compiled, layout + " seed " + seed);
+            blocksCompiled += recompiler.getBlocksCompiled();
+            blockRuns += recompiler.getBlockRuns();
+            invalidations += recompiler.getInvalidations();
+        }
+        Assertions.assertTrue(blocksCompiled > 0, "no blocks compiled in " + layout);
+        Assertions.assertTrue(blockRuns > blocksCompiled, "blocks did not run again in " + layout);
+        if (selfModifying && layout != Layout.PRG_ROM) {
+            Assertions.assertTrue(invalidations > 0, "no code was changed under a block in " + layout);
+        }
+    }
+
+    // runs the program for the seed in a series of budgets and returns the state it ended in
+    private static String run(Layout layout, boolean selfModifying, long seed, Recompiler recompiler) {
+        Random random = new Random(seed);
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+        MainBus mainBus = cpu.getMainBus();
+        CPUMemory cpuMemory = cpu.getCpuMemory();
+        for (int addr = 0; addr < CPUMemory.ADDRESS_SPACE_SIZE; addr++) {
+            cpuMemory.writeByte(addr, random.nextInt(0x100));
+        }
+        // zero page pointers that often point at the device
+        for (int addr = 1; addr < 0x100; addr += 2) {
+            if (random.nextBoolean()) {
+                cpuMemory.writeByte(addr, (DEVICE_START >> 8) + random.nextInt(2));
+            }
+        }
+        CountingDevice device = new CountingDevice();
+        mainBus.mapDevice(DEVICE_START, DEVICE_END, device);
+        if (layout != Layout.RAM) {
+            byte[] rom = new byte[0x8000];
+            random.nextBytes(rom);
+            PRGRAM prgRam = new PRGRAM();
+            for (int addr = 0; addr < prgRam.getMemorySize(); addr++) {
+                prgRam.writeByte(addr, random.nextInt(0x100));
+            }
+            if (layout == Layout.PRG_ROM) {
+                writeProgram(random, selfModifying, layout.start, (addr, val) -> rom[addr & 0x7FFF] = (byte) val);
+                rom[0x7FFE] = (byte) layout.start;
+                rom[0x7FFF] = (byte) (layout.start >> 8);
+            } else {
+                writeProgram(random, selfModifying, layout.start, prgRam::writeByte);
+            }
+            mainBus.mapPRG(prgRam, new PRGROM(rom));
+        } else {
+            writeProgram(random, selfModifying, layout.start, cpuMemory::writeByte);
+            cpuMemory.writeByte(0xFFFE, layout.start);
+            cpuMemory.writeByte(0xFFFF, layout.start >> 8);
+        }
+
+        CPURegisterState registers = cpu.getRegisters();
+        registers.PC = layout.start;
+        registers.setP(random.nextInt(0x100));
+        cpu.setRecompiler(recompiler);
+        for (int i = 0; i < 200 && !cpu.isJammed(); i++) {
+            cpu.runCycles(1 + i * 37 % 500);
+        }
+        return state(cpu) + " device=" + device.state;
+    }
+
+    private interface ByteWriter {
+        void writeByte(int addr, int val);
+    }
+
+    // random instructions from start, ending in a JMP back to start
+    // BRK, RTI and JAM are left out so the program keeps running
+    private static void writeProgram(Random random, boolean selfModifying, int start, ByteWriter writer) {
+        int pc = start;
+        while (pc < start + PROGRAM_BYTES) {
+            if (selfModifying && random.nextInt(4) == 0) {
+                int target = start + random.nextInt(PROGRAM_BYTES);
+                writer.writeByte(pc, CODE_STORES[random.nextInt(CODE_STORES.length)]);
+                writer.writeByte(pc + 1, target);
+                writer.writeByte(pc + 2, target >> 8);
+                pc += 3;
+                continue;
+            }
+            int opcode;
+            do {
+                opcode = random.nextInt(0x100);
+            } while (opcode == 0x00 || opcode == 0x40 || CPUOpcodeTable.get(opcode).opcodeAssembly.equals("JAM"));
+            int numBytes = CPUOpcodeTable.get(opcode).numBytes;
+            writer.writeByte(pc, opcode);
+            for (int i = 1; i < numBytes; i++) {
+                writer.writeByte(pc + i, random.nextInt(0x100));
+            }
+            pc += numBytes;
+        }
+        writer.writeByte(pc, 0x4C); // JMP start
+        writer.writeByte(pc + 1, start);
+        writer.writeByte(pc + 2, start >> 8);
+    }
+
+    // the registers, cycles and a hash of every page of plain memory
+    private static String state(CPU cpu) {
+        CPURegisterState registers = cpu.getRegisters();
+        long hash = 0;
+        for (int page = 0; page < 0x100; page++) {
+            Memory memory = cpu.getMainBus().getMemoryPage(page);
+            if (memory == null) {
+                continue;
+            }
+            for (int addr = page << 8; addr < (page + 1) << 8; addr++) {
+                hash = hash * 31 + memory.readByte(addr);
+            }
+        }
+        return String.format("PC=%04X A=%02X X=%02X Y=%02X S=%02X P=%02X cycles=%d jammed=%b memory=%x",
+                registers.PC, registers.A, registers.X, registers.Y, registers.S, registers.getP(),
+                cpu.getCycles(), cpu.isJammed(), hash);
+    }
+}
@@ -0,0 +1,180 @@
+package nes_emulator.nes.components.cpu;
+
+import nes_emulator.nes.components.memory.CPUMemory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// every pair runCycles fuses has to end in the same registers, memory and cycles as running its two instructions
+// one at a time without the decode cache, also after the second instruction was written over since the last run
+class SuperinstructionsTest {
+    private static final int PROGRAM = 0x0200;
+    private static final int DATA = 0x0300;
+    // the internal ram size, small enough to compare all of it after every run
+    private static final int MEMORY_SIZE = 0x0800;
+
+    private static final int[] FIRSTS = {
+            0xA1, 0xA5, 0xA9, 0xAD, 0xB1, 0xB5, 0xB9, 0xBD, // LDA
+            0xCA, 0x88,                                     // DEX, DEY
+            0xC1, 0xC5, 0xC9, 0xCD, 0xD1, 0xD5, 0xD9, 0xDD, // CMP
+            0xE0, 0xE4, 0xEC,                               // CPX
+            0xC0, 0xC4, 0xCC,                               // CPY
+    };
+    private static final int[] BRANCHES = {0x10, 0x30, 0x50, 0x70, 0x90, 0xB0, 0xD0, 0xF0};
+    private static final int[] STORES = {0x81, 0x85, 0x8D, 0x91, 0x95, 0x99, 0x9D};
+    // what the second instruction is overwritten with: another branch, a store and an instruction that
+    // does not pair at all
+    private static final int[] REPLACEMENTS = {0xD0, 0x8D, 0xE8};
+
+    // A, X, Y and P
+    private static final int[][] STATES = {
+            {0x00, 0x00, 0x00, 0x24},
+            {0x80, 0x01, 0xFF, 0xE7},
+            {0x10, 0x10, 0x10, 0x65},
+            {0xFF, 0x02, 0x01, 0xA6},
+            {0x40, 0x81, 0x7F, 0x27},
+    };
+
+    @Test
+    void pairsMatchSingleSteps() {
+        for (int first : FIRSTS) {
+            boolean load = CPUOpcodeTable.get(first).opcodeAssembly.equals("LDA");
+            for (int second : load ? concat(BRANCHES, STORES) : BRANCHES) {
+                CPUOpcodeEntry firstEntry = CPUOpcodeTable.get(first);
+                Assertions.assertTrue(Superinstructions.isPair(firstEntry, CPUOpcodeTable.get(second)),
+                        pairName(first, second));
+                for (int[] state : STATES) {
+                    checkPair(first, second, state);
+                }
+            }
+        }
+    }
+
+    @Test
+    void otherInstructionsDoNotPair() {
+        for (int opcode = 0; opcode < 0x100; opcode++) {
+            CPUOpcodeEntry entry = CPUOpcodeTable.get(opcode);
+            boolean starts = contains(FIRSTS, opcode);
+            Assertions.assertEquals(starts, Superinstructions.canStart(entry), entry.toString());
+            // only LDA pairs with a store, and DEX only with a branch
+            Assertions.assertEquals(starts && entry.opcodeAssembly.equals("LDA"),
+                    Superinstructions.isPair(entry, CPUOpcodeTable.get(0x8D)), entry.toString());
+            Assertions.assertEquals(entry.isBranch(), Superinstructions.isPair(CPUOpcodeTable.get(0xCA), entry),
+                    entry.toString());
+        }
+    }
+
+    private static void checkPair(int first, int second, int[] state) {
+        String name = pairName(first, second) + " A=" + state[0] + " X=" + state[1] + " Y=" + state[2]
+                + " P=" + state[3];
+        CPU fused = newCpu();
+        fused.setIdleLoopDetector(null);
+        writeProgram(fused, first, second, state);
+        // the first run caches both instructions, the next one links and fuses them
+        checkRun(fused, state, name);
+        long pairs = fused.getDecodeCache().getPairs();
+        checkRun(fused, state, name);
+        Assertions.assertEquals(pairs + 1, fused.getDecodeCache().getPairs(), name + " was not fused");
+
+        for (int replacement : REPLACEMENTS) {
+            writeInstruction(fused, PROGRAM + CPUOpcodeTable.get(first).numBytes, replacement, state);
+            checkRun(fused, state, name + " overwritten with " + CPUOpcodeTable.get(replacement));
+        }
+    }
+
+    // runs the pair at PROGRAM from the state with a budget that leaves room for the second instruction even after
+    // a page crossing in the first, and compares it to single steps from a copy of the memory it started with
+    private static void checkRun(CPU fused, int[] state, String name) {
+        resetData(fused);
+        setState(fused, state);
+        CPU single = newCpu();
+        single.setDecodeCache(null);
+        for (int addr = 0; addr < MEMORY_SIZE; addr++) {
+            single.getCpuMemory().writeByte(addr, fused.getCpuMemory().readByte(addr));
+        }
+        setState(single, state);
+
+        long before = fused.getCycles();
+        fused.runCycles(CPUOpcodeTable.get(fused.getCpuMemory().readByte(PROGRAM)).numCycles + 2);
+        long expectedCycles = single.executeNextCmd() + single.executeNextCmd();
+
+        CPURegisterState expected = single.getRegisters();
+        CPURegisterState actual = fused.getRegisters();
+        Assertions.assertEquals(expectedCycles, fused.getCycles() - before, name + " cycles");
+        Assertions.assertEquals(expected.PC, actual.PC, name + " PC");
+        Assertions.assertEquals(expected.A, actual.A, name + " A");
+        Assertions.assertEquals(expected.X, actual.X, name + " X");
+        Assertions.assertEquals(expected.Y, actual.Y, name + " Y");
+        Assertions.assertEquals(expected.S, actual.S, name + " S");
+        Assertions.assertEquals(expected.getP(), actual.getP(), name + " P");
+        for (int addr = 0; addr < MEMORY_SIZE; addr++) {
+            Assertions.assertEquals(single.getCpuMemory().readByte(addr), fused.getCpuMemory().readByte(addr),
+                    name + " memory at " + Integer.toHexString(addr));
+        }
+    }
+
+    private static CPU newCpu() {
+        return new CPU(new CPUMemory(MEMORY_SIZE));
+    }
+
+    private static void writeProgram(CPU cpu, int first, int second, int[] state) {
+        writeInstruction(cpu, PROGRAM, first, state);
+        writeInstruction(cpu, PROGRAM + CPUOpcodeTable.get(first).numBytes, second, state);
+    }
+
+    // zero page operands point at DATA, absolute ones into it and branches go forward or back depending on the state
+    private static void writeInstruction(CPU cpu, int addr, int opcode, int[] state) {
+        CPUOpcodeEntry entry = CPUOpcodeTable.get(opcode);
+        CPUMemory memory = cpu.getCpuMemory();
+        memory.writeByte(addr, opcode);
+        if (entry.isBranch()) {
+            memory.writeByte(addr + 1, state[1] % 2 == 0 ? 0xF8 : 0x04);
+        } else if (entry.numBytes == 2) {
+            memory.writeByte(addr + 1, entry.opcodeAssembly.equals("STA") ? 0x31 : 0x10);
+        } else if (entry.numBytes == 3) {
+            memory.writeByte(addr + 1, entry.opcodeAssembly.equals("STA") ? 0x30 : 0x20);
+            memory.writeByte(addr + 2, DATA >> 8);
+        }
+    }
+
+    // any two zero page bytes make a pointer into DATA, which holds values around the compare and branch edges
+    private static void resetData(CPU cpu) {
+        CPUMemory memory = cpu.getCpuMemory();
+        for (int addr = 0; addr < 0x100; addr++) {
+            memory.writeByte(addr, (DATA >> 8) + (addr & 1));
+        }
+        for (int addr = DATA; addr < DATA + 0x200; addr++) {
+            memory.writeByte(addr, (addr * 37) & 0xFF);
+        }
+    }
+
+    private static void setState(CPU cpu, int[] state) {
+        CPURegisterState registers = cpu.getRegisters();
+        registers.PC = PROGRAM;
+        registers.A = state[0];
+        registers.X = state[1];
+        registers.Y = state[2];
+        registers.S = 0xFD;
+        registers.setP(state[3]);
+    }
+
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        System.arraycopy(a, 0, result, 0, a.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
+    private static boolean contains(int[] values, int value) {
+        for (int v : values) {
+            if (v == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String pairName(int first, int second) {
+        return CPUOpcodeTable.get(first) + " then " + CPUOpcodeTable.get(second);
+    }
+}
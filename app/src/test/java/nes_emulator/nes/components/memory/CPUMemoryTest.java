@@ -0,0 +1,119 @@
+package nes_emulator.nes.components.memory;
+
+import nes_emulator.App;
+import nes_emulator.nes.components.cpu.CPU;
+import nes_emulator.singlestep.SingleStepDiff;
+import nes_emulator.singlestep.SingleStepState;
+import nes_emulator.singlestep.SingleStepTest;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+// initialize() only resets the addresses in the touched-address journal, so nothing the previous case
+// initialized or wrote may still be there, or be reported as touched, in the next one
+class CPUMemoryTest {
+    private static final PrintStream NO_OUTPUT = new PrintStream(OutputStream.nullOutputStream());
+
+    @Test
+    void initializeClearsThePreviousCase() {
+        CPUMemory memory = new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE);
+        memory.initialize(new int[][]{{0x0200, 0x11}, {0x0300, 0x22}});
+        memory.writeByte(0x0400, 0x33);
+        Assertions.assertEquals(3, memory.getNumTouched());
+
+        memory.initialize(new int[][]{{0x0500, 0x44}});
+        for (int addr : new int[]{0x0200, 0x0300, 0x0400}) {
+            Assertions.assertEquals(0, memory.readByte(addr), "value left at " + Integer.toHexString(addr));
+            Assertions.assertFalse(memory.isTouched(addr), "still touched " + Integer.toHexString(addr));
+        }
+        Assertions.assertTrue(memory.isTouched(0x0500));
+        Assertions.assertEquals(1, memory.getNumTouched());
+        Assertions.assertArrayEquals(new int[]{0x0500}, memory.getTouchedAddresses());
+        assertMemory(memory, new int[][]{{0x0500, 0x44}});
+    }
+
+    @Test
+    void initializeClearsWritesAfterTheFirstInitialize() {
+        CPUMemory memory = new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE);
+        memory.initialize(new int[][]{{0x0010, 0x01}});
+        memory.initialize(new int[][]{{0x0020, 0x02}});
+        memory.writeByte(0x0030, 0x03);
+        memory.writeByte(0x0020, 0x04);
+        assertMemory(memory, new int[][]{{0x0020, 0x04}, {0x0030, 0x03}});
+
+        memory.initialize(new int[][]{{0x0040, 0x05}});
+        Assertions.assertEquals(0, memory.readByte(0x0020));
+        Assertions.assertEquals(0, memory.readByte(0x0030));
+        assertMemory(memory, new int[][]{{0x0040, 0x05}});
+    }
+
+    @Test
+    void initializeKeepsAnAddressSetAgain() {
+        CPUMemory memory = new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE);
+        memory.initialize(new int[][]{{0x0200, 0x11}, {0x0201, 0x12}});
+        memory.initialize(new int[][]{{0x0201, 0x22}});
+        Assertions.assertEquals(0, memory.readByte(0x0200));
+        assertMemory(memory, new int[][]{{0x0201, 0x22}});
+    }
+
+    @Test
+    void initializeOnlyUsesTheGivenLength() {
+        CPUMemory memory = new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE);
+        memory.initialize(new int[][]{{0x0200, 0x11}, {0x0300, 0x22}}, 1);
+        Assertions.assertEquals(0, memory.readByte(0x0300));
+        assertMemory(memory, new int[][]{{0x0200, 0x11}});
+    }
+
+    @Test
+    void firstInitializeClearsEarlierWrites() {
+        CPUMemory memory = new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE);
+        memory.writeByte(0x0600, 0x66);
+        memory.initialize(new int[][]{{0x0200, 0x11}});
+        Assertions.assertEquals(0, memory.readByte(0x0600));
+        assertMemory(memory, new int[][]{{0x0200, 0x11}});
+    }
+
+    // a store in one case must not show up as an unexpected ram write in the next one
+    @Test
+    void storeDoesNotLeakIntoTheNextCase() {
+        CPU cpu = new CPU(new CPUMemory(CPUMemory.ADDRESS_SPACE_SIZE));
+
+        SingleStepTest store = new SingleStepTest();
+        // STA $0300
+        setState(store.initialState, 0x0200, 0x55, new int[][]{{0x0200, 0x8D}, {0x0201, 0x00}, {0x0202, 0x03}});
+        setState(store.finalState, 0x0203, 0x55,
+                new int[][]{{0x0200, 0x8D}, {0x0201, 0x00}, {0x0202, 0x03}, {0x0300, 0x55}});
+        Assertions.assertTrue(App.runTest(cpu, store, NO_OUTPUT));
+
+        SingleStepTest nop = new SingleStepTest();
+        // NOP
+        setState(nop.initialState, 0x0400, 0x00, new int[][]{{0x0400, 0xEA}});
+        setState(nop.finalState, 0x0401, 0x00, new int[][]{{0x0400, 0xEA}});
+        SingleStepDiff diff = new SingleStepDiff();
+        Assertions.assertTrue(App.runTest(cpu, nop, diff, NO_OUTPUT), () -> diff.getMismatches().toString());
+        Assertions.assertEquals(0, cpu.getCpuMemory().readByte(0x0300));
+    }
+
+    private static void setState(SingleStepState state, int pc, int a, int[][] ram) {
+        state.pc = pc;
+        state.s = 0xFD;
+        state.a = a;
+        state.x = 0;
+        state.y = 0;
+        state.p = 0x24;
+        state.ram = ram;
+        state.ramSize = ram.length;
+    }
+
+    private static void assertMemory(CPUMemory memory, int[][] expected) {
+        ArrayList<int[]> actual = memory.getMemoryArr();
+        Assertions.assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertArrayEquals(expected[i], actual.get(i));
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package nes_emulator.build;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// generates CPUGeneratedOpcodes from the opcode spec table
+// every opcode gets its own method that computes the effective address for its addressing mode and then runs
+// the operation on it directly, so the JIT sees small methods with no addressing mode checks,
+// and execute() picks the method with a switch
+// the stack, subroutine and interrupt instructions call their handler in CPUInstructionList instead
+// the instruction pairs Superinstructions recognises get one method for both, which executePair() picks,
+// and a branch after DEX, DEY, LDA or a compare tests what the first one computed instead of the flag
+public abstract class GenerateOpcodes extends DefaultTask {
+    private static final String PACKAGE = "nes_emulator.nes.components.cpu";
+    private static final String CLASS_NAME = "CPUGeneratedOpcodes";
+
+    private static class Opcode {
+        int opcode;
+        String mnemonic;
+        String addressingMode;
+        int numCycles;
+        boolean updatesPC = true;
+        int branchFlagBit = -1;
+        int branchFlagValue;
+
+        String methodName() {
+            return mnemonic + "_" + addressingMode;
+        }
+    }
+
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getSpec();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    @TaskAction
+    public void generate() throws IOException {
+        List<Opcode> opcodes = parse(getSpec().get().getAsFile().toPath());
+        Path dir = getOutputDir().get().getAsFile().toPath().resolve(PACKAGE.replace('.', '/'));
+        Files.createDirectories(dir);
+        Files.write(dir.resolve(CLASS_NAME + ".java"), generate(opcodes).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<Opcode> parse(Path spec) throws IOException {
+        List<Opcode> opcodes = new ArrayList<>();
+        boolean[] seen = new boolean[0x100];
+        List<String> lines = Files.readAllLines(spec, StandardCharsets.UTF_8);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split("\\s+");
+            try {
+                Opcode opcode = new Opcode();
+                opcode.opcode = Integer.decode(columns[0]);
+                opcode.mnemonic = columns[1];
+                opcode.addressingMode = columns[2];
+                opcode.numCycles = Integer.parseInt(columns[3]);
+                if (columns.length == 5 && columns[4].equals("jump")) {
+                    opcode.updatesPC = false;
+                } else if (columns.length == 7 && columns[4].equals("branch")) {
+                    opcode.updatesPC = false;
+                    opcode.branchFlagBit = Integer.parseInt(columns[5]);
+                    opcode.branchFlagValue = Integer.parseInt(columns[6]);
+                } else if (columns.length != 4) {
+                    throw new IllegalArgumentException("unknown columns");
+                }
+                if (opcode.opcode < 0 || opcode.opcode > 0xFF || seen[opcode.opcode]) {
+                    throw new IllegalArgumentException("opcode out of range or listed twice");
+                }
+                if (opcode.branchFlagBit >= 0 != opcode.addressingMode.equals("RELATIVE")) {
+                    throw new IllegalArgumentException("only branches are relative");
+                }
+                seen[opcode.opcode] = true;
+                opcodes.add(opcode);
+            } catch (RuntimeException e) {
+                throw new GradleException(spec.getFileName() + ":" + (i + 1) + ": " + e.getMessage() + ": " + line, e);
+            }
+        }
+        return opcodes;
+    }
+
+    private static String generate(List<Opcode> opcodes) {
+        StringBuilder out = new StringBuilder();
+        out.append("// generated by the generateOpcodes task from src/main/opcodes/opcodes.txt, do not edit\n");
+        out.append("package ").append(PACKAGE).append(";\n\n");
+        out.append("import nes_emulator.nes.components.bus.MainBus;\n");
+        out.append("import nes_emulator.nes.components.cpu.CPUInstruction.AddressingMode;\n\n");
+        out.append("final class ").append(CLASS_NAME).append(" {\n\n");
+        out.append("    private ").append(CLASS_NAME).append("() {\n    }\n\n");
+
+        out.append("    // the entries of the listed opcodes, CPUOpcodeTable fills in the rest\n");
+        out.append("    static CPUOpcodeEntry[] entries() {\n");
+        out.append("        return new CPUOpcodeEntry[]{\n");
+        for (Opcode opcode : opcodes) {
+            out.append(String.format(Locale.ROOT,
+                    "                new CPUOpcodeEntry(%s, \"%s\", AddressingMode.%s, %d, %b, %d, %d),\n",
+                    hex(opcode.opcode), opcode.mnemonic, opcode.addressingMode, opcode.numCycles,
+                    opcode.updatesPC, opcode.branchFlagBit, opcode.branchFlagValue));
+        }
+        out.append("        };\n    }\n\n");
+
+        out.append("    // runs the instruction at the PC, whose operand bytes are already read, and returns the cycles it took\n");
+        out.append("    static int execute(int opcode, CPU cpu, CPURegisterState registers, MainBus mainBus, int operand) {\n");
+        out.append("        switch (opcode) {\n");
+        for (Opcode opcode : opcodes) {
+            out.append("            case ").append(hex(opcode.opcode)).append(":\n");
+            out.append("                return ").append(opcode.methodName())
+                    .append("(cpu, registers, mainBus, operand);\n");
+        }
+        out.append("            default:\n");
+        out.append("                CPUInstructionList.JAM(cpu);\n");
+        out.append("                return 2;\n");
+        out.append("        }\n    }\n\n");
+
+        List<Opcode[]> pairs = new ArrayList<>();
+        out.append("    // runs a Superinstructions pair, the instruction at the PC and the one right after it, and returns the\n");
+        out.append("    // cycles both took\n");
+        out.append("    static int executePair(int opcode, int nextOpcode, CPU cpu, CPURegisterState registers, MainBus mainBus,\n");
+        out.append("                           int operand, int nextOperand) {\n");
+        out.append("        switch (opcode) {\n");
+        for (Opcode first : opcodes) {
+            boolean starts = false;
+            for (Opcode second : opcodes) {
+                if (!isPair(first, second)) {
+                    continue;
+                }
+                if (!starts) {
+                    out.append("            case ").append(hex(first.opcode)).append(":\n");
+                    out.append("                switch (nextOpcode) {\n");
+                    starts = true;
+                }
+                out.append("                    case ").append(hex(second.opcode)).append(":\n");
+                out.append("                        return ").append(pairMethodName(first, second))
+                        .append("(cpu, registers, mainBus, operand, nextOperand);\n");
+                pairs.add(new Opcode[]{first, second});
+            }
+            if (starts) {
+                out.append("                }\n");
+                out.append("                break;\n");
+            }
+        }
+        out.append("        }\n");
+        out.append("        throw new IllegalStateException(\"no method for the pair \" + Integer.toHexString(opcode) + \" \"\n");
+        out.append("                + Integer.toHexString(nextOpcode));\n");
+        out.append("    }\n");
+
+        for (Opcode opcode : opcodes) {
+            out.append("\n");
+            generateMethod(out, opcode);
+        }
+        for (Opcode[] pair : pairs) {
+            out.append("\n");
+            generatePairMethod(out, pair[0], pair[1]);
+        }
+        out.append("}\n");
+        return out.toString();
+    }
+
+    // the pairs Superinstructions recognises: LDA then STA, and DEX, DEY, LDA or a compare then a branch
+    private static boolean isPair(Opcode first, Opcode second) {
+        switch (first.mnemonic) {
+            case "LDA":
+                return second.branchFlagBit >= 0 || second.mnemonic.equals("STA");
+            case "DEX":
+            case "DEY":
+            case "CMP":
+            case "CPX":
+            case "CPY":
+                return second.branchFlagBit >= 0;
+            default:
+                return false;
+        }
+    }
+
+    private static String pairMethodName(Opcode first, Opcode second) {
+        return first.methodName() + "_" + second.methodName();
+    }
+
+    // the address and operation of one opcode, reading the same bytes as every other instruction in its
+    // addressing mode, e.g. a store reads its address first too, so the bus sees the same accesses
+    private static void generateMethod(StringBuilder out, Opcode opcode) {
+        out.append("    private static int ").append(opcode.methodName())
+                .append("(CPU cpu, CPURegisterState registers, MainBus mainBus, int operand) {\n");
+        out.append("        int cycles = ").append(opcode.numCycles).append(";\n");
+        appendInstruction(out, opcode, "operand", branchCondition(opcode));
+        out.append("        return cycles;\n");
+        out.append("    }\n");
+    }
+
+    // both instructions of a pair, the second starts at the PC the first leaves, and the cycles start at the sum
+    // of their base cycles
+    // a branch uses the locals of the first instruction, a store gets its own block as both address memory
+    private static void generatePairMethod(StringBuilder out, Opcode first, Opcode second) {
+        out.append("    private static int ").append(pairMethodName(first, second))
+                .append("(\n");
+        out.append("            CPU cpu, CPURegisterState registers, MainBus mainBus, int operand, int nextOperand) {\n");
+        out.append("        int cycles = ").append(first.numCycles + second.numCycles).append(";\n");
+        if (second.branchFlagBit >= 0) {
+            appendInstruction(out, first, "operand", null);
+            appendInstruction(out, second, "nextOperand", fusedBranchCondition(first, second));
+        } else {
+            appendBlock(out, first, "operand");
+            appendBlock(out, second, "nextOperand");
+        }
+        out.append("        return cycles;\n");
+        out.append("    }\n");
+    }
+
+    private static void appendBlock(StringBuilder out, Opcode opcode, String operand) {
+        StringBuilder block = new StringBuilder();
+        appendInstruction(block, opcode, operand, null);
+        out.append("        {\n");
+        out.append(block.toString().replaceAll("(?m)^", "    "));
+        out.append("        }\n");
+    }
+
+    // the address, operation and PC update of one instruction, operand names the local with its operand bytes
+    // and a branch is taken when condition holds
+    private static void appendInstruction(StringBuilder out, Opcode opcode, String operand, String condition) {
+        appendAddress(out, opcode, operand);
+        appendOperation(out, opcode, condition);
+        if (opcode.updatesPC) {
+            int numBytes = numBytes(opcode.addressingMode);
+            out.append("        registers.PC = (registers.PC + ").append(numBytes).append(") & 0xFFFF;\n");
+        }
+    }
+
+    private static void appendAddress(StringBuilder out, Opcode opcode, String operand) {
+        switch (opcode.addressingMode) {
+            case "IMPLIED":
+                break;
+            case "IMMEDIATE":
+                out.append("        int value = ").append(operand).append(";\n");
+                break;
+            case "ABSOLUTE":
+            case "ZEROPAGE":
+                out.append("        int address = ").append(operand).append(";\n");
+                out.append("        int value = mainBus.readByte(address);\n");
+                break;
+            case "INDEXED_ABSOLUTE_X":
+            case "INDEXED_ABSOLUTE_Y":
+                out.append("        int address = ").append(operand).append(" + registers.").append(indexRegister(opcode))
+                        .append(";\n");
+                appendPageCross(out, operand);
+                out.append("        int value = mainBus.readByte(address);\n");
+                break;
+            case "INDEXED_ZEROPAGE_X":
+            case "INDEXED_ZEROPAGE_Y":
+                out.append("        int address = (").append(operand).append(" + registers.").append(indexRegister(opcode))
+                        .append(") & 0xFF;\n");
+                out.append("        int value = mainBus.readByte(address);\n");
+                break;
+            case "INDIRECT":
+                // the pointer does not carry into its high byte
+                out.append("        int pointerNext = (").append(operand).append(" & 0xFF00) | ((").append(operand)
+                        .append(" + 1) & 0xFF);\n");
+                out.append("        int address = mainBus.readByte(").append(operand)
+                        .append(") | (mainBus.readByte(pointerNext) << 8);\n");
+                break;
+            case "PRE_INDEXED_INDIRECT":
+                out.append("        int pointer = (").append(operand).append(" + registers.X) & 0xFF;\n");
+                out.append("        int address = mainBus.readByte(pointer) | (mainBus.readByte((pointer + 1) & 0xFF) << 8);\n");
+                out.append("        int value = mainBus.readByte(address);\n");
+                break;
+            case "POST_INDEXED_INDIRECT":
+                out.append("        int base = mainBus.readByte(").append(operand).append(") | (mainBus.readByte((").append(operand)
+                        .append(" + 1) & 0xFF) << 8);\n");
+                out.append("        int address = base + registers.Y;\n");
+                appendPageCross(out, "base");
+                out.append("        int value = mainBus.readByte(address);\n");
+                break;
+            case "RELATIVE":
+                // not called address, so it can follow the first instruction of a pair in the same method
+                out.append("        int target = (registers.PC + (byte) ").append(operand).append(" + 2) & 0xFFFF;\n");
+                break;
+            case "ACCUMULATOR":
+                out.append("        int value = registers.A;\n");
+                break;
+            default:
+                throw new GradleException("Unknown addressing mode " + opcode.addressingMode + " for " + hex(opcode.opcode));
+        }
+    }
+
+    // the operation on value, the byte the addressing mode read, or on the memory at address
+    private static void appendOperation(StringBuilder out, Opcode opcode, String condition) {
+        String mnemonic = opcode.mnemonic;
+        if (opcode.branchFlagBit >= 0) {
+            out.append("        if (").append(condition).append(") {\n");
+            out.append("            cycles += (target & 0xFF00) == (registers.PC & 0xFF00) ? 1 : 2;\n");
+            out.append("            registers.PC = target;\n");
+            out.append("        } else {\n");
+            out.append("            registers.PC = (registers.PC + 2) & 0xFFFF;\n");
+            out.append("        }\n");
+            return;
+        }
+        switch (mnemonic) {
+            case "LDA":
+            case "LDX":
+            case "LDY":
+                out.append("        registers.").append(mnemonic.charAt(2)).append(" = value;\n");
+                appendStatusNZ(out, "value");
+                break;
+            case "STA":
+            case "STX":
+            case "STY":
+                out.append("        mainBus.writeByte(address, registers.").append(mnemonic.charAt(2)).append(");\n");
+                break;
+            case "AND":
+            case "ORA":
+            case "EOR":
+                String operator = mnemonic.equals("AND") ? "&" : mnemonic.equals("ORA") ? "|" : "^";
+                out.append("        int result = registers.A ").append(operator).append(" value;\n");
+                out.append("        registers.A = result;\n");
+                appendStatusNZ(out, "result");
+                break;
+            case "ADC":
+            case "SBC":
+            case "BIT":
+                String helper = mnemonic.equals("ADC") ? "add" : mnemonic.equals("SBC") ? "subtract" : "bitTest";
+                out.append("        CPUInstructionList.").append(helper).append("(registers, value);\n");
+                break;
+            case "CMP":
+            case "CPX":
+            case "CPY":
+                String register = mnemonic.equals("CMP") ? "A" : mnemonic.substring(2);
+                out.append("        CPUInstructionList.compare(registers, registers.").append(register).append(", value);\n");
+                break;
+            case "INC":
+            case "DEC":
+                out.append("        int result = (value ").append(mnemonic.equals("INC") ? "+" : "-").append(" 1) & 0xFF;\n");
+                out.append("        mainBus.writeByte(address, result);\n");
+                appendStatusNZ(out, "result");
+                break;
+            case "INX":
+            case "INY":
+            case "DEX":
+            case "DEY":
+                String index = "registers." + mnemonic.charAt(2);
+                out.append("        int result = (").append(index).append(mnemonic.startsWith("IN") ? " + " : " - ")
+                        .append("1) & 0xFF;\n");
+                out.append("        ").append(index).append(" = result;\n");
+                appendStatusNZ(out, "result");
+                break;
+            case "TAX":
+            case "TAY":
+            case "TSX":
+            case "TXA":
+            case "TYA":
+                out.append("        int result = registers.").append(mnemonic.charAt(1)).append(";\n");
+                out.append("        registers.").append(mnemonic.charAt(2)).append(" = result;\n");
+                appendStatusNZ(out, "result");
+                break;
+            case "TXS":
+                // the only transfer that leaves the flags alone
+                out.append("        registers.S = registers.X;\n");
+                break;
+            case "CLC":
+            case "CLD":
+            case "CLI":
+            case "CLV":
+            case "SEC":
+            case "SED":
+            case "SEI":
+                out.append("        registers.setStatus").append(mnemonic.charAt(2)).append("(")
+                        .append(mnemonic.startsWith("SE") ? 1 : 0).append(");\n");
+                break;
+            case "NOP":
+                break;
+            case "ASL":
+            case "LSR":
+            case "ROL":
+            case "ROR":
+                String shift = mnemonic.equals("ASL") ? "shiftLeft" : mnemonic.equals("LSR") ? "shiftRight"
+                        : mnemonic.equals("ROL") ? "rotateLeft" : "rotateRight";
+                out.append("        int result = CPUInstructionList.").append(shift).append("(registers, value);\n");
+                if (opcode.addressingMode.equals("ACCUMULATOR")) {
+                    out.append("        registers.A = result;\n");
+                } else {
+                    out.append("        mainBus.writeByte(address, result);\n");
+                }
+                break;
+            case "JMP":
+                out.append("        registers.PC = address;\n");
+                break;
+            case "JSR":
+                out.append("        CPUInstructionList.JSR(cpu, address);\n");
+                break;
+            default:
+                // the stack and interrupt handlers have no operand to take
+                if (!opcode.addressingMode.equals("IMPLIED")) {
+                    throw new GradleException("No handler takes the operand of " + mnemonic + " " + opcode.addressingMode);
+                }
+                out.append("        CPUInstructionList.").append(mnemonic).append("(cpu);\n");
+                break;
+        }
+    }
+
+    // a branch tests its flag, null for any other instruction
+    private static String branchCondition(Opcode opcode) {
+        if (opcode.branchFlagBit < 0) {
+            return null;
+        }
+        return "registers." + flagGetter(opcode.branchFlagBit) + "() == " + opcode.branchFlagValue;
+    }
+
+    // a branch after the first instruction of a pair tests the value the flag was just set from, N and Z come from
+    // the result of DEX, DEY and LDA, and N, Z and C from the register and value a compare subtracted
+    // a flag the first instruction leaves alone is tested like in a lone branch
+    private static String fusedBranchCondition(Opcode first, Opcode branch) {
+        boolean set = branch.branchFlagValue == 1;
+        String result = first.mnemonic.equals("LDA") ? "value" : "result";
+        String register = "registers." + (first.mnemonic.equals("CMP") ? "A" : first.mnemonic.substring(2));
+        boolean compare = first.mnemonic.startsWith("C");
+        switch (branch.branchFlagBit) {
+            case 0:
+                if (compare) {
+                    return register + (set ? " >= " : " < ") + "value";
+                }
+                break;
+            case 1:
+                return (compare ? register : result) + (set ? " == " : " != ") + (compare ? "value" : "0");
+            case 7:
+                String difference = compare ? "(" + register + " - value)" : result;
+                return "(" + difference + " & 0x80) " + (set ? "!=" : "==") + " 0";
+            default:
+                break;
+        }
+        return branchCondition(branch);
+    }
+
+    private static void appendStatusNZ(StringBuilder out, String result) {
+        out.append("        registers.setStatusNZ(").append(result).append(");\n");
+    }
+
+    private static void appendPageCross(StringBuilder out, String base) {
+        out.append("        if ((address & 0xFF00) != (").append(base).append(" & 0xFF00)) {\n");
+        out.append("            // crossed a page boundary\n");
+        out.append("            cycles++;\n");
+        out.append("        }\n");
+    }
+
+    private static String indexRegister(Opcode opcode) {
+        return opcode.addressingMode.endsWith("_X") ? "X" : "Y";
+    }
+
+    private static String flagGetter(int bit) {
+        switch (bit) {
+            case 0:
+                return "getStatusC";
+            case 1:
+                return "getStatusZ";
+            case 6:
+                return "getStatusV";
+            case 7:
+                return "getStatusN";
+            default:
+                throw new GradleException("No branch tests status bit " + bit);
+        }
+    }
+
+    private static int numBytes(String addressingMode) {
+        switch (addressingMode) {
+            case "IMPLIED":
+            case "ACCUMULATOR":
+                return 1;
+            case "ABSOLUTE":
+            case "INDEXED_ABSOLUTE_X":
+            case "INDEXED_ABSOLUTE_Y":
+            case "INDIRECT":
+                return 3;
+            default:
+                return 2;
+        }
+    }
+
+    private static String hex(int opcode) {
+        return String.format(Locale.ROOT, "0x%02X", opcode);
+    }
+}